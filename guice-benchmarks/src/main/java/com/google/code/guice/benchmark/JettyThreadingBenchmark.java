@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.benchmark;
+
+import com.google.code.jersey.jetty.VirtualThreadPool;
+import com.google.code.jersey.jetty.VirtualThreads;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares handling blocking requests on the Jetty thread pool to handling them on virtual threads, as
+ * {@code ServerConfig.enableVirtualThreads} does, with more concurrent clients than pool threads.  The sample time
+ * mode reports the p99 latency along with the throughput.
+ *
+ * The virtual mode needs JDK 21+: run {@code java -jar benchmarks.jar JettyThreadingBenchmark} with such a JDK.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Dhttp.maxConnections=256")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(128)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JettyThreadingBenchmark
+{
+  @Param({"platform", "virtual"})
+  private String mode;
+
+  @Param({"16"})
+  private int numThreads;
+
+  @Param({"10"})
+  private int blockingMillis;
+
+  private Server server;
+  private URL url;
+
+  @Setup
+  public void setup() throws Exception
+  {
+    if ("virtual".equals(mode)) {
+      server = new Server(new VirtualThreadPool(VirtualThreads.newExecutor("benchmark-")));
+    } else {
+      // Same sizing as JettyServerModule: the handling threads, plus the acceptors and selectors.
+      final QueuedThreadPool threadPool = new QueuedThreadPool(numThreads + 8, numThreads + 8);
+      threadPool.setDaemon(true);
+      server = new Server(threadPool);
+    }
+    final ServerConnector connector = new ServerConnector(server);
+    connector.setHost("localhost");
+    connector.setPort(0);
+    server.addConnector(connector);
+
+    final ServletContextHandler root = new ServletContextHandler();
+    root.addServlet(new ServletHolder(new BlockingServlet(blockingMillis)), "/*");
+    server.setHandler(root);
+    server.start();
+    url = new URL("http", "localhost", connector.getLocalPort(), "/blocking");
+  }
+
+  @TearDown
+  public void tearDown() throws Exception
+  {
+    server.stop();
+  }
+
+  @Benchmark
+  public int blockingRequest() throws IOException
+  {
+    final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    final int status = connection.getResponseCode();
+    // Reading the body to the end lets the connection be reused.
+    try (InputStream in = connection.getInputStream()) {
+      while (in.read() >= 0) {
+        // Drain
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Stands for a resource waiting on a downstream call.
+   */
+  private static class BlockingServlet extends HttpServlet
+  {
+    private final int blockingMillis;
+
+    BlockingServlet(int blockingMillis)
+    {
+      this.blockingMillis = blockingMillis;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+    {
+      try {
+        Thread.sleep(blockingMillis);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      resp.setContentType("text/plain");
+      resp.getWriter().write("ok");
+    }
+  }
+}
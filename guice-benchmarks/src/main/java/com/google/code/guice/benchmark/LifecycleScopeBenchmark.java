@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.benchmark;
+
+import com.google.code.guice.lifecycle.Lifecycle;
+import com.google.code.guice.lifecycle.LifecycleScope;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LifecycleScope} providers once their instance is created, when many threads inject it at once.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(8)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LifecycleScopeBenchmark
+{
+  private Provider<Object> scoped;
+  private Provider<Object> synchronizedScoped;
+
+  @Setup
+  public void setup()
+  {
+    final LifecycleScope scope = new LifecycleScope(Lifecycle.Stage.NORMAL);
+    scope.setLifecycle(new Lifecycle("benchmark"));
+    scoped = scope.scope(Key.get(Object.class), Object::new);
+    scoped.get();
+
+    final LifecycleScope baselineScope = new LifecycleScope(Lifecycle.Stage.NORMAL);
+    baselineScope.setLifecycle(new Lifecycle("baseline"));
+    synchronizedScoped = new SynchronizedProvider<>(baselineScope.scope(Key.get(Object.class), Object::new));
+    synchronizedScoped.get();
+  }
+
+  @Benchmark
+  public Object scoped()
+  {
+    return scoped.get();
+  }
+
+  @Benchmark
+  public Object synchronizedScoped()
+  {
+    return synchronizedScoped.get();
+  }
+
+  /**
+   * The previous LifecycleScope provider, which took its monitor on every call.
+   */
+  private static class SynchronizedProvider<T> implements Provider<T>
+  {
+    private final Provider<T> delegate;
+    private volatile T value = null;
+
+    SynchronizedProvider(Provider<T> delegate)
+    {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized T get()
+    {
+      if (value == null) {
+        value = delegate.get();
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.google.code.guice.jsonconfig.TunedObjectMapper;
+import com.google.code.jersey.ServerConfig;
+import com.google.code.jersey.resource.StatusResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link TunedObjectMapper} to a plain mapper with the same datatype modules, on the config read at
+ * startup and the objects written by the REST resources.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ObjectMapperBenchmark
+{
+  @Param({"default", "tuned"})
+  private String mapperType;
+
+  private ObjectMapper mapper;
+  private ServerConfig serverConfig;
+  private byte[] serverConfigJson;
+  private StatusResource.Status status;
+
+  @Setup
+  public void setup() throws IOException
+  {
+    if ("tuned".equals(mapperType)) {
+      mapper = new TunedObjectMapper();
+    } else {
+      mapper = new ObjectMapper().registerModule(new GuavaModule()).registerModule(new JodaModule());
+    }
+    serverConfig = new ServerConfig();
+    serverConfigJson = mapper.writeValueAsBytes(serverConfig);
+    status = new StatusResource.Status();
+  }
+
+  @Benchmark
+  public ServerConfig readServerConfig() throws IOException
+  {
+    return mapper.readerFor(ServerConfig.class).readValue(serverConfigJson);
+  }
+
+  @Benchmark
+  public byte[] writeServerConfig() throws IOException
+  {
+    return mapper.writerFor(ServerConfig.class).writeValueAsBytes(serverConfig);
+  }
+
+  @Benchmark
+  public byte[] writeStatus() throws IOException
+  {
+    return mapper.writerFor(StatusResource.Status.class).writeValueAsBytes(status);
+  }
+}
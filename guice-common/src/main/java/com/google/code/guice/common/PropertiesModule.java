@@ -24,12 +24,20 @@ import com.google.inject.Module;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
 /**
  * 加载properties配置(包括系统配置)
+ *
+ * The files found on the file system are also watched by the bound {@link PropertiesWatcher} once it is started, see
+ * {@link PropertiesWatcher}.
  */
 @Slf4j
 public class PropertiesModule implements Module
@@ -46,6 +54,15 @@ public class PropertiesModule implements Module
 
   @Override
   public void configure(Binder binder)
+  {
+    binder.bind(Properties.class).toInstance(loadProperties());
+    binder.bind(PropertiesWatcher.class).toInstance(new PropertiesWatcher(watchableFiles(), this::loadProperties));
+  }
+
+  /**
+   * Loads the properties files, in order, under the system properties.
+   */
+  private Properties loadProperties()
   {
     final Properties fileProps = new Properties();
     Properties systemProps = System.getProperties();
@@ -78,13 +95,38 @@ public class PropertiesModule implements Module
       }
       finally {
         try{
-          stream.close();
+          if (stream != null) {
+            stream.close();
+          }
         }catch (IOException e) {
           log.error("IOException thrown while closing Closeable.", e);
         }
       }
     }
 
-    binder.bind(Properties.class).toInstance(props);
+    return props;
+  }
+
+  /**
+   * The files the properties are loaded from which can be watched: classpath resources which are plain files, and
+   * files of the working directory, whether they exist yet or not.
+   */
+  private List<Path> watchableFiles()
+  {
+    final List<Path> files = new ArrayList<>();
+    for (String propertiesFile : propertiesFiles) {
+      final URL resource = ClassLoader.getSystemResource(propertiesFile);
+      if (resource == null) {
+        files.add(Paths.get(propertiesFile).toAbsolutePath());
+      } else if ("file".equals(resource.getProtocol())) {
+        try {
+          files.add(Paths.get(resource.toURI()));
+        }
+        catch (URISyntaxException e) {
+          log.warn("Not watching properties file [{}]", resource, e);
+        }
+      }
+    }
+    return files;
   }
 }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.common;
+
+import com.google.common.collect.ImmutableList;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Watches the files properties are loaded from and, when one of them changes, loads the properties again and hands
+ * them to the listeners.  The Properties loaded at startup are never modified, each reload produces new ones.
+ *
+ * Nothing is watched until {@link #start()} is called.  Changes are coalesced for a short while before reloading, as
+ * editors and deployment tools commonly produce several events for a single change.
+ */
+@Slf4j
+public class PropertiesWatcher implements Closeable
+{
+  private static final long COALESCE_MILLIS = 100;
+
+  private final List<Path> files;
+  private final Supplier<Properties> loader;
+  private final List<Consumer<Properties>> listeners = new CopyOnWriteArrayList<>();
+  private WatchService watchService = null;
+  private Thread thread = null;
+
+  /**
+   * @param files  The files to watch
+   * @param loader Loads the properties from the files
+   */
+  public PropertiesWatcher(List<Path> files, Supplier<Properties> loader)
+  {
+    this.files = ImmutableList.copyOf(files);
+    this.loader = loader;
+  }
+
+  public void addListener(Consumer<Properties> listener)
+  {
+    listeners.add(listener);
+  }
+
+  public List<Path> getFiles()
+  {
+    return files;
+  }
+
+  /**
+   * Starts watching the files, calling it again has no effect.
+   */
+  public synchronized void start() throws IOException
+  {
+    if (thread != null) {
+      return;
+    }
+    if (files.isEmpty()) {
+      log.info("No properties file to watch");
+      return;
+    }
+    watchService = FileSystems.getDefault().newWatchService();
+    final Set<Path> directories = new HashSet<>();
+    for (Path file : files) {
+      if (directories.add(file.getParent())) {
+        file.getParent().register(
+            watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY
+        );
+      }
+    }
+    thread = new Thread(this::watch, "PropertiesWatcher");
+    thread.setDaemon(true);
+    thread.start();
+    log.info("Watching properties files {}", files);
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (thread != null) {
+      watchService.close();
+      thread.interrupt();
+      thread = null;
+    }
+  }
+
+  private void watch()
+  {
+    final WatchService watchService;
+    synchronized (this) {
+      watchService = this.watchService;
+    }
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        boolean changed = drain(watchService.take());
+        WatchKey key;
+        while ((key = watchService.poll(COALESCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed |= drain(key);
+        }
+        if (changed) {
+          reload();
+        }
+      }
+    }
+    catch (InterruptedException | ClosedWatchServiceException e) {
+      // Closed, stop watching.
+    }
+  }
+
+  /**
+   * @return whether one of the watched files changed
+   */
+  private boolean drain(WatchKey key)
+  {
+    boolean changed = false;
+    final Path directory = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.context() instanceof Path && files.contains(directory.resolve((Path) event.context()))) {
+        changed = true;
+      }
+    }
+    key.reset();
+    return changed;
+  }
+
+  private void reload()
+  {
+    final Properties props;
+    try {
+      props = loader.get();
+    }
+    catch (RuntimeException e) {
+      log.error("Unable to reload properties from {}, keeping the current ones", files, e);
+      return;
+    }
+    log.info("Reloaded properties from {}", files);
+    for (Consumer<Properties> listener : listeners) {
+      try {
+        listener.accept(props);
+      }
+      catch (RuntimeException e) {
+        log.error("Properties listener [{}] failed", listener, e);
+      }
+    }
+  }
+}
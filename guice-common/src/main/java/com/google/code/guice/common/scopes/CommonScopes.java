@@ -22,18 +22,21 @@ package com.google.code.guice.common.scopes;
 import com.google.inject.Key;
 import com.google.inject.Provider;
 import com.google.inject.Scope;
-import com.google.inject.Scopes;
 
 /**
  */
 public class CommonScopes
 {
+  /**
+   * A lazy singleton scope which, unlike Guice's Scopes.SINGLETON, is implemented by {@link LazySingletonProvider}:
+   * each key is created under its own lock and read without any lock once created.
+   */
   public static final Scope SINGLETON = new Scope()
   {
     @Override
     public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped)
     {
-      return Scopes.SINGLETON.scope(key, unscoped);
+      return new LazySingletonProvider<>(key, unscoped);
     }
 
     @Override
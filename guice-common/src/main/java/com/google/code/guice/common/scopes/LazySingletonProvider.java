@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.common.scopes;
+
+import com.google.code.guice.common.utils.StringUtils;
+import com.google.common.base.Joiner;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provider of {@link CommonScopes#SINGLETON}.  The instance is created under a lock of this provider only, so unrelated
+ * keys can be created concurrently, and once created it is returned by a single volatile read.
+ *
+ * A thread needing a key it is already creating calls the unscoped provider again, as {@code Scopes.SINGLETON} does, so
+ * that Guice resolves the circular dependency with a proxy when the dependency is an interface, and reports it
+ * otherwise.  Threads creating different keys which would wait on each other get a {@link ProvisionException} rather
+ * than deadlocking.
+ */
+class LazySingletonProvider<T> implements Provider<T>
+{
+  /** Stands for a null instance, so that null can be told apart from not created yet. */
+  private static final Object NULL = new Object();
+
+  /** The provider each thread is blocked on, used to find circular waits between threads. */
+  private static final Map<Thread, LazySingletonProvider<?>> WAITING = new ConcurrentHashMap<>();
+
+  private final Key<T> key;
+  private final Provider<T> unscoped;
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile Thread owner = null;
+  private volatile Object instance = null;
+
+  LazySingletonProvider(Key<T> key, Provider<T> unscoped)
+  {
+    this.key = key;
+    this.unscoped = unscoped;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get()
+  {
+    Object current = instance;
+    if (current == null) {
+      current = create();
+    }
+    return current == NULL ? null : (T) current;
+  }
+
+  private Object create()
+  {
+    final Thread me = Thread.currentThread();
+    if (lock.isHeldByCurrentThread()) {
+      // Not kept, the instance is the one the outer call is creating.
+      return wrap(unscoped.get());
+    }
+    if (!lock.tryLock()) {
+      WAITING.put(me, this);
+      try {
+        checkCircularWait(me);
+        lock.lock();
+      }
+      finally {
+        WAITING.remove(me);
+      }
+    }
+
+    try {
+      if (instance == null) {
+        owner = me;
+        try {
+          instance = wrap(unscoped.get());
+        }
+        finally {
+          owner = null;
+        }
+      }
+      return instance;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Follows the chain of threads owning the provider the previous one waits for.  Coming back to the current thread
+   * means that waiting would never end.
+   */
+  private void checkCircularWait(Thread me)
+  {
+    final List<Key<?>> chain = new ArrayList<>();
+    chain.add(key);
+    LazySingletonProvider<?> waitedOn = this;
+    // Bounded, as the chain may change or loop among other threads while it is being followed.
+    for (int i = 0, max = WAITING.size(); i <= max; i++) {
+      final Thread thread = waitedOn.owner;
+      if (thread == null) {
+        return;
+      }
+      if (thread == me) {
+        throw new ProvisionException(
+            StringUtils.format("Circular dependency between threads creating [%s]", Joiner.on(" -> ").join(chain))
+        );
+      }
+      waitedOn = WAITING.get(thread);
+      if (waitedOn == null) {
+        return;
+      }
+      chain.add(waitedOn.key);
+    }
+  }
+
+  private static Object wrap(Object created)
+  {
+    return created == null ? NULL : created;
+  }
+
+  @Override
+  public String toString()
+  {
+    return StringUtils.format("%s[%s]", unscoped, CommonScopes.SINGLETON);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.common;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class PropertiesWatcherTest
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test(timeout = 60_000)
+  public void testReloadOnChange() throws Exception
+  {
+    final Path file = temporaryFolder.newFile("runtime.properties").toPath();
+    Files.write(file, "a=1\n".getBytes(StandardCharsets.UTF_8));
+    final BlockingQueue<Properties> reloads = new LinkedBlockingQueue<>();
+    try (PropertiesWatcher watcher = new PropertiesWatcher(ImmutableList.of(file), () -> load(file))) {
+      watcher.addListener(reloads::add);
+      watcher.start();
+      // An unrelated file of the same directory doesn't trigger a reload.
+      Files.write(temporaryFolder.getRoot().toPath().resolve("other.txt"), new byte[]{1});
+      Files.write(file, "a=2\n".getBytes(StandardCharsets.UTF_8));
+      final Properties reloaded = reloads.poll(30, TimeUnit.SECONDS);
+      Assert.assertNotNull(reloaded);
+      Assert.assertEquals("2", reloaded.getProperty("a"));
+    }
+  }
+
+  private static Properties load(Path file)
+  {
+    final Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      props.load(reader);
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return props;
+  }
+}
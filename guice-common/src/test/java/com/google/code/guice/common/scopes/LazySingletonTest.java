@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.common.scopes;
+
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.ProvisionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ */
+public class LazySingletonTest
+{
+  @Test
+  public void testCreatedOnceUnderConcurrency() throws Exception
+  {
+    final Injector injector = Guice.createInjector(new LazySingleModule());
+    Counted.CREATED.set(0);
+    final CountDownLatch go = new CountDownLatch(1);
+    final ExecutorService exec = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Counted>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(exec.submit(() -> {
+          go.await();
+          return injector.getInstance(Counted.class);
+        }));
+      }
+      go.countDown();
+      final Counted first = futures.get(0).get();
+      for (Future<Counted> future : futures) {
+        Assert.assertSame(first, future.get());
+      }
+      Assert.assertEquals(1, Counted.CREATED.get());
+    }
+    finally {
+      exec.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCircularDependency()
+  {
+    final Injector injector = Guice.createInjector(new LazySingleModule());
+    try {
+      injector.getInstance(CircularA.class);
+      Assert.fail("Circular dependency should have been detected");
+    }
+    catch (ProvisionException e) {
+      // Reported by Guice, which can't proxy a class.
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("circular dependency"));
+    }
+  }
+
+  @Test
+  public void testCircularDependencyThroughInterfaceIsProxied()
+  {
+    final Injector injector = Guice.createInjector(
+        new LazySingleModule(),
+        binder -> binder.bind(CircularInterface.class).to(CircularImpl.class)
+    );
+    final CircularInterface instance = injector.getInstance(CircularInterface.class);
+    Assert.assertSame(instance, injector.getInstance(CircularInterface.class));
+    final CircularUser user = injector.getInstance(CircularUser.class);
+    Assert.assertSame(user, ((CircularImpl) instance).user);
+    // The proxy injected while the instance was being created delegates to it.
+    Assert.assertNotSame(instance, user.circular);
+    Assert.assertEquals("impl", user.circular.name());
+  }
+
+  @LazySingleton
+  public static class Counted
+  {
+    static final AtomicInteger CREATED = new AtomicInteger();
+
+    public Counted() throws InterruptedException
+    {
+      // Give the other threads a chance to ask for the instance while it's being created.
+      Thread.sleep(50);
+      CREATED.incrementAndGet();
+    }
+  }
+
+  public interface CircularInterface
+  {
+    String name();
+  }
+
+  @LazySingleton
+  public static class CircularImpl implements CircularInterface
+  {
+    final CircularUser user;
+
+    @Inject
+    public CircularImpl(CircularUser user)
+    {
+      this.user = user;
+    }
+
+    @Override
+    public String name()
+    {
+      return "impl";
+    }
+  }
+
+  @LazySingleton
+  public static class CircularUser
+  {
+    final CircularInterface circular;
+
+    @Inject
+    public CircularUser(CircularInterface circular)
+    {
+      this.circular = circular;
+    }
+  }
+
+  @LazySingleton
+  public static class CircularA
+  {
+    @Inject
+    public CircularA(CircularB b)
+    {
+    }
+  }
+
+  @LazySingleton
+  public static class CircularB
+  {
+    @Inject
+    public CircularB(CircularA a)
+    {
+    }
+  }
+}
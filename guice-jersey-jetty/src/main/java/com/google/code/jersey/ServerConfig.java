@@ -103,14 +103,62 @@ public class ServerConfig
   @JsonProperty
   private boolean enableRequestLimit = false;
 
+  /**
+   * The limit of {@link #enableRequestLimit}.  Requests count once a thread took them off the queue of the Jetty thread
+   * pool, so the limit only rejects synchronous requests when below {@link #numThreads}, which leaves the other threads
+   * to the exempt paths; requests in async mode count until they complete.
+   */
+  @JsonProperty
+  @Min(1)
+  private int maxActiveRequests = Integer.MAX_VALUE;
+
+  /**
+   * Adjusts the limit of {@link #enableRequestLimit} to the latency of the requests, between
+   * {@link #minActiveRequests} and {@link #maxActiveRequests}.  The limit starts from the requests the server handles
+   * at once, {@link #numThreads} or {@link #maxVirtualThreadRequests}, when below {@link #maxActiveRequests}.
+   */
+  @JsonProperty
+  private boolean enableAdaptiveRequestLimit = false;
+
+  /**
+   * The lowest limit of {@link #enableAdaptiveRequestLimit}, however slow the requests.
+   */
+  @JsonProperty
+  @Min(1)
+  private int minActiveRequests = 1;
+
   @JsonProperty
   @NotNull
   private Period maxIdleTime = new Period("PT5m");
 
+  /**
+   * The timeout of the requests, in milliseconds, unless they ask for another one up to {@link #maxQueryTimeout}.
+   * 0 or more than {@link #maxQueryTimeout} means {@link #maxQueryTimeout}, and no timeout if that is unbounded.
+   */
   @JsonProperty
   @Min(0)
   private long defaultQueryTimeout = TimeUnit.MINUTES.toMillis(5);
 
+  /**
+   * Interrupts the threads handling the requests once they time out, and answers them with a 504, see
+   * {@code RequestDeadlineFilter}.
+   */
+  @JsonProperty
+  private boolean enableRequestDeadline = false;
+
+  /**
+   * Rejects the requests which waited in the queue of the Jetty thread pool for longer than
+   * {@link #maxQueueWaitPercent} of their default timeout, {@link #defaultQueryTimeout} capped at
+   * {@link #maxQueryTimeout}, and keeps a histogram of the waits.  Doesn't apply when requests have no timeout.
+   */
+  @JsonProperty
+  private boolean enableQueueTimeShedding = false;
+
+  @JsonProperty
+  @Min(1)
+  @Max(100)
+  private int maxQueueWaitPercent = 10;
+
   @JsonProperty
   @Min(1)
   private long maxScatterGatherBytes = Long.MAX_VALUE;
@@ -139,6 +187,21 @@ public class ServerConfig
   @Max(9)
   private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
 
+  /**
+   * Runs the tasks of Jetty, handling the requests included, on virtual threads instead of a pool of
+   * {@link #numThreads}, JDK 21+ only.  {@link #maxVirtualThreadRequests} then bounds the requests handled at once
+   * instead of {@link #queueSize}, and {@link #enableQueueTimeShedding} doesn't apply.
+   *
+   * Guice 4.1 generates its proxies with cglib, which needs {@code --add-opens java.base/java.lang=ALL-UNNAMED} on
+   * the JVM command line of these JDKs.
+   */
+  @JsonProperty
+  private boolean enableVirtualThreads = false;
+
+  @JsonProperty
+  @Min(1)
+  private int maxVirtualThreadRequests = 10_000;
+
 
   public static int getDefaultNumThreads()
   {
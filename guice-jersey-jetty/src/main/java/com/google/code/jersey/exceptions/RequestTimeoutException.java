@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.exceptions;
+
+/**
+ * Thrown when a request overran its deadline, Jersey exception mapper will take care of sending a 504 response back.
+ */
+public class RequestTimeoutException extends RuntimeException
+{
+  private final long timeoutMillis;
+  private final long elapsedMillis;
+
+  public RequestTimeoutException(long timeoutMillis, long elapsedMillis)
+  {
+    super("Request timed out.");
+    this.timeoutMillis = timeoutMillis;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public long getTimeoutMillis()
+  {
+    return timeoutMillis;
+  }
+
+  public long getElapsedMillis()
+  {
+    return elapsedMillis;
+  }
+}
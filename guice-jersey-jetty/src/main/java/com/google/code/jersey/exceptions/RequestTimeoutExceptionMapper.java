@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.exceptions;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class RequestTimeoutExceptionMapper implements ExceptionMapper<RequestTimeoutException>
+{
+  public static final int SC_GATEWAY_TIMEOUT = 504;
+
+  @Override
+  public Response toResponse(RequestTimeoutException exception)
+  {
+    return Response.status(SC_GATEWAY_TIMEOUT)
+                   .type(MediaType.APPLICATION_JSON)
+                   .entity(ImmutableMap.of(
+                       "error", exception.getMessage(),
+                       "timeoutMillis", exception.getTimeoutMillis(),
+                       "elapsedMillis", exception.getElapsedMillis()
+                   ))
+                   .build();
+  }
+}
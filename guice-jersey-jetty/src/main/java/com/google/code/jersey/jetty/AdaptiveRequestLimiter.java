@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Adjusts the limit of a {@link RequestLimitFilter} every second, from the latency of the requests measured by the
+ * {@link StatisticsHandler}, in the manner of a gradient limiter.
+ *
+ * The average latency of the last second is compared to the lowest one of the last {@link #MIN_LATENCY_BUCKETS}
+ * minutes, which stands for the latency without load.  While the last second is within {@link #TOLERANCE} of the
+ * lowest, the limit grows by its square root, and when requests take longer, which is when they queue somewhere, it
+ * shrinks with the ratio of the two, by half at most.  The limit doesn't grow when less than half of it was used, as
+ * nothing tells how the server would cope with more.
+ *
+ * The lowest latency is kept per minute, so that a shrunk limit, which brings the latency back down, keeps it low for
+ * as long as the load lasts, while the limit still recovers once every minute of the window saw slower requests, e.g.
+ * because of a dependency that became slower for good rather than because of the load.
+ */
+@Slf4j
+public class AdaptiveRequestLimiter extends AbstractLifeCycle
+{
+  private static final long WINDOW_MILLIS = 1000;
+  /** Too few requests in a window tell nothing about the latency. */
+  private static final int MIN_WINDOW_REQUESTS = 10;
+  private static final double TOLERANCE = 1.5;
+  private static final long MIN_LATENCY_BUCKET_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final int MIN_LATENCY_BUCKETS = 10;
+  private static final double SMOOTHING = 0.2;
+
+  private final StatisticsHandler statisticsHandler;
+  private final RequestLimitFilter filter;
+  private final Scheduler scheduler;
+  private final int minLimit;
+  private final int initialLimit;
+  private final int maxLimit;
+  private final LongSupplier nanoClock;
+
+  // Only used by the scheduler thread, one window at a time.
+  private double limit;
+  /** The lowest latency of each minute, and the minute it is the lowest of, by the minute modulo the buckets. */
+  private final double[] minLatencies = new double[MIN_LATENCY_BUCKETS];
+  private final long[] minLatencyMinutes = new long[MIN_LATENCY_BUCKETS];
+  private long lastRequests;
+  private long lastRequestTime;
+  private long lastRejected;
+
+  public AdaptiveRequestLimiter(
+      StatisticsHandler statisticsHandler,
+      RequestLimitFilter filter,
+      Scheduler scheduler,
+      int minLimit,
+      int initialLimit,
+      int maxLimit
+  )
+  {
+    this(statisticsHandler, filter, scheduler, minLimit, initialLimit, maxLimit, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  AdaptiveRequestLimiter(
+      StatisticsHandler statisticsHandler,
+      RequestLimitFilter filter,
+      Scheduler scheduler,
+      int minLimit,
+      int initialLimit,
+      int maxLimit,
+      LongSupplier nanoClock
+  )
+  {
+    this.statisticsHandler = statisticsHandler;
+    this.filter = filter;
+    this.scheduler = scheduler;
+    this.minLimit = minLimit;
+    this.initialLimit = initialLimit;
+    this.maxLimit = maxLimit;
+    this.nanoClock = nanoClock;
+    this.limit = initialLimit;
+    Arrays.fill(minLatencyMinutes, Long.MIN_VALUE);
+  }
+
+  @Override
+  protected void doStart()
+  {
+    limit = initialLimit;
+    filter.setMaxActiveRequests(initialLimit);
+    lastRequests = statisticsHandler.getRequests();
+    lastRequestTime = statisticsHandler.getRequestTimeTotal();
+    lastRejected = filter.getRejectedRequests();
+    schedule();
+  }
+
+  private void schedule()
+  {
+    scheduler.schedule(
+        () -> {
+          if (!isRunning()) {
+            return;
+          }
+          try {
+            update();
+          }
+          catch (RuntimeException e) {
+            log.error("Unable to update the request limit", e);
+          }
+          schedule();
+        },
+        WINDOW_MILLIS,
+        TimeUnit.MILLISECONDS
+    );
+  }
+
+  void update()
+  {
+    final long requests = statisticsHandler.getRequests();
+    final long requestTime = statisticsHandler.getRequestTimeTotal();
+    final long rejected = filter.getRejectedRequests();
+    // The rejected requests take no time, they don't count in the latency.
+    final long handled = (requests - lastRequests) - (rejected - lastRejected);
+    final long windowTime = requestTime - lastRequestTime;
+    final int peakActive = filter.getAndResetPeakActiveRequests();
+    lastRequests = requests;
+    lastRequestTime = requestTime;
+    lastRejected = rejected;
+    if (handled < MIN_WINDOW_REQUESTS) {
+      return;
+    }
+
+    // At least one millisecond, the precision of the statistics.
+    final double latency = Math.max(1.0, (double) windowTime / handled);
+    final double minLatency = recordMinLatency(latency);
+
+    final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * minLatency / latency));
+    if (gradient == 1.0 && peakActive < limit / 2) {
+      return;
+    }
+    final double newLimit = limit * gradient + Math.sqrt(limit);
+    limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+    if ((int) limit != filter.getMaxActiveRequests()) {
+      log.debug(
+          "Request limit [{}] -> [{}], latency [{}] ms, lowest [{}] ms",
+          filter.getMaxActiveRequests(),
+          (int) limit,
+          latency,
+          minLatency
+      );
+      filter.setMaxActiveRequests((int) limit);
+    }
+  }
+
+  /**
+   * @return the lowest latency of the window, the given one included
+   */
+  private double recordMinLatency(double latency)
+  {
+    final long minute = Math.floorDiv(nanoClock.getAsLong(), MIN_LATENCY_BUCKET_NANOS);
+    final int bucket = (int) Math.floorMod(minute, (long) MIN_LATENCY_BUCKETS);
+    if (minLatencyMinutes[bucket] != minute || latency < minLatencies[bucket]) {
+      minLatencyMinutes[bucket] = minute;
+      minLatencies[bucket] = latency;
+    }
+    double minLatency = latency;
+    for (int i = 0; i < MIN_LATENCY_BUCKETS; i++) {
+      if (minLatencyMinutes[i] > minute - MIN_LATENCY_BUCKETS) {
+        minLatency = Math.min(minLatency, minLatencies[i]);
+      }
+    }
+    return minLatency;
+  }
+}
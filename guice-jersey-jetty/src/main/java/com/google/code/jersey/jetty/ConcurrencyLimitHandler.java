@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the requests handled at once, rejecting the others with a 503, as requests are rejected once the queue of the
+ * Jetty thread pool is full.  Used with the {@link VirtualThreadPool}, which has no queue to bound.  Requests in async
+ * mode are handled until they complete.
+ */
+public class ConcurrencyLimitHandler extends HandlerWrapper
+{
+  private final Semaphore permits;
+
+  public ConcurrencyLimitHandler(int maxConcurrentRequests)
+  {
+    this.permits = new Semaphore(maxConcurrentRequests);
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+      throws IOException, ServletException
+  {
+    // Async dispatches of the request hold the permit of its initial dispatch.
+    if (!baseRequest.getHttpChannelState().isInitial()) {
+      super.handle(target, baseRequest, request, response);
+      return;
+    }
+    if (!permits.tryAcquire()) {
+      baseRequest.setHandled(true);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many concurrent requests");
+      return;
+    }
+
+    boolean async = false;
+    try {
+      super.handle(target, baseRequest, request, response);
+      if (request.isAsyncStarted()) {
+        request.getAsyncContext().addListener(new CompletionListener());
+        async = true;
+      }
+    }
+    finally {
+      if (!async) {
+        permits.release();
+      }
+    }
+  }
+
+  public int getAvailablePermits()
+  {
+    return permits.availablePermits();
+  }
+
+  private class CompletionListener implements AsyncListener
+  {
+    @Override
+    public void onComplete(AsyncEvent event)
+    {
+      permits.release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event)
+    {
+    }
+
+    @Override
+    public void onError(AsyncEvent event)
+    {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event)
+    {
+      // Dispatched again and started async again, the listener must be added again to be notified of the completion.
+      event.getAsyncContext().addListener(this);
+    }
+  }
+}
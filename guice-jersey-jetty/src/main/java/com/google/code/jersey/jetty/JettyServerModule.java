@@ -29,10 +29,13 @@ import com.google.code.jersey.ServerConfig;
 import com.google.code.jersey.exceptions.BadRequestExceptionMapper;
 import com.google.code.jersey.exceptions.CustomExceptionMapper;
 import com.google.code.jersey.exceptions.ForbiddenExceptionMapper;
+import com.google.code.jersey.exceptions.RequestTimeoutExceptionMapper;
 import com.google.code.jersey.resource.StatusResource;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Ints;
 import com.google.inject.*;
 import com.google.inject.servlet.GuiceFilter;
+import com.google.inject.servlet.RequestScoped;
 import com.sun.jersey.api.core.DefaultResourceConfig;
 import com.sun.jersey.api.core.ResourceConfig;
 import com.sun.jersey.guice.JerseyServletModule;
@@ -43,12 +46,15 @@ import org.eclipse.jetty.server.*;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
 import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +68,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class JettyServerModule extends JerseyServletModule
 {
   private static final AtomicInteger ACTIVE_CONNECTIONS = new AtomicInteger();
+  /** Paths not limited by {@link ServerConfig#isEnableRequestLimit()}, so that load balancers see the server alive. */
+  public static final Set<String> UNLIMITED_PATHS = ImmutableSet.of("/status/health");
+  private static final int REQUEST_LIMIT_RETRY_AFTER_SECONDS = 1;
 
   @Override
   protected void configureServlets()
@@ -75,6 +84,7 @@ public class JettyServerModule extends JerseyServletModule
     binder.bind(CustomExceptionMapper.class).in(Singleton.class);
     binder.bind(ForbiddenExceptionMapper.class).in(Singleton.class);
     binder.bind(BadRequestExceptionMapper.class).in(Singleton.class);
+    binder.bind(RequestTimeoutExceptionMapper.class).in(Singleton.class);
 
     serve("/*").with(JerseyGuiceContainer.class);
 
@@ -122,6 +132,30 @@ public class JettyServerModule extends JerseyServletModule
     return provider;
   }
 
+  @Provides
+  @Singleton
+  public RequestLimitFilter getRequestLimitFilter(ServerConfig config)
+  {
+    return new RequestLimitFilter(config.getMaxActiveRequests(), UNLIMITED_PATHS, REQUEST_LIMIT_RETRY_AFTER_SECONDS);
+  }
+
+  @Provides
+  @Singleton
+  public QueueWaitHistogram getQueueWaitHistogram()
+  {
+    return new QueueWaitHistogram();
+  }
+
+  @Provides
+  @RequestScoped
+  public RequestDeadline getRequestDeadline(HttpServletRequest request)
+  {
+    final RequestDeadline deadline = (RequestDeadline) request.getAttribute(RequestDeadlineFilter.DEADLINE_ATTRIBUTE);
+    // Not set for requests which didn't go through the filter, or without ServerConfig#isEnableRequestDeadline(), which
+    // are then not limited.
+    return deadline == null ? new RequestDeadline(0, Thread.currentThread()) : deadline;
+  }
+
   static JerseyJettyServer makeAndInitializeServer(
       Injector injector,
       ServerConfig config
@@ -131,11 +165,28 @@ public class JettyServerModule extends JerseyServletModule
     // that concurrently handle the requests".
     int numServerThreads = config.getNumThreads() + getMaxJettyAcceptorsSelectorsNum(config);
 
-    final QueuedThreadPool threadPool;
-    if (config.getQueueSize() == Integer.MAX_VALUE) {
-      threadPool = new QueuedThreadPool();
-      threadPool.setMinThreads(numServerThreads);
-      threadPool.setMaxThreads(numServerThreads);
+    final boolean queueTimeShedding = isQueueTimeShedding(config);
+    if (config.isEnableQueueTimeShedding() && !queueTimeShedding) {
+      log.warn(
+          config.isEnableVirtualThreads()
+          ? "Not shedding requests, the virtual thread pool runs the requests without queueing them"
+          : "Not shedding requests, they have no timeout to take the budget of their wait in the queue from"
+      );
+    }
+    final ThreadPool threadPool;
+    if (config.isEnableVirtualThreads()) {
+      log.info("Handling requests on virtual threads, at most [{}] at once", config.getMaxVirtualThreadRequests());
+      threadPool = new VirtualThreadPool(VirtualThreads.newExecutor("jetty-"));
+    } else if (queueTimeShedding) {
+      threadPool = new QueueTimeThreadPool(
+          numServerThreads,
+          config.getQueueSize() == Integer.MAX_VALUE ? null : new LinkedBlockingQueue<>(config.getQueueSize())
+      );
+    } else if (config.getQueueSize() == Integer.MAX_VALUE) {
+      final QueuedThreadPool queuedThreadPool = new QueuedThreadPool();
+      queuedThreadPool.setMinThreads(numServerThreads);
+      queuedThreadPool.setMaxThreads(numServerThreads);
+      threadPool = queuedThreadPool;
     } else {
       threadPool = new QueuedThreadPool(
           numServerThreads,
@@ -145,13 +196,16 @@ public class JettyServerModule extends JerseyServletModule
       );
     }
 
-    threadPool.setDaemon(true);
+    if (threadPool instanceof QueuedThreadPool) {
+      ((QueuedThreadPool) threadPool).setDaemon(true);
+    }
 
     final Server server = new Server(threadPool);
 
     // Without this bean set, the default ScheduledExecutorScheduler runs as non-daemon, causing lifecycle hooks to fail
     // to fire on main exit. Related bug: https://github.com/apache/incubator-druid/pull/1627
-    server.addBean(new ScheduledExecutorScheduler("JettyScheduler", true), true);
+    final ScheduledExecutorScheduler scheduler = new ScheduledExecutorScheduler("JettyScheduler", true);
+    server.addBean(scheduler, true);
 
     final List<ServerConnector> serverConnectors = new ArrayList<>();
 
@@ -219,6 +273,58 @@ public class JettyServerModule extends JerseyServletModule
 
     final ServletContextHandler root = new ServletContextHandler(ServletContextHandler.SESSIONS);
     root.addServlet(new ServletHolder(new DefaultServlet()), "/*");
+    final RequestLimitFilter requestLimitFilter = injector.getInstance(RequestLimitFilter.class);
+    if (config.isEnableRequestLimit()) {
+      if (config.isEnableAdaptiveRequestLimit()) {
+        log.info(
+            "Limiting requests to between [{}] and [{}] at once, from [{}], except to {}",
+            getMinAdaptiveRequestLimit(config),
+            config.getMaxActiveRequests(),
+            getInitialAdaptiveRequestLimit(config),
+            UNLIMITED_PATHS
+        );
+        if (config.getMinActiveRequests() > config.getMaxActiveRequests()) {
+          log.warn(
+              "minActiveRequests [{}] is over maxActiveRequests [{}], the request limit won't change",
+              config.getMinActiveRequests(),
+              config.getMaxActiveRequests()
+          );
+        }
+      } else {
+        log.info(
+            "Limiting requests to [{}] at once, except to {}",
+            requestLimitFilter.getMaxActiveRequests(),
+            UNLIMITED_PATHS
+        );
+        final int maxHandledRequests = getMaxHandledRequests(config);
+        if (requestLimitFilter.getMaxActiveRequests() >= maxHandledRequests) {
+          log.warn(
+              "Request limit [{}] is not below the [{}] requests handled at once, only async requests can go over it",
+              requestLimitFilter.getMaxActiveRequests(),
+              maxHandledRequests
+          );
+        }
+      }
+      final FilterHolder requestLimitFilterHolder = new FilterHolder(requestLimitFilter);
+      // Async requests are active until they complete.
+      requestLimitFilterHolder.setAsyncSupported(true);
+      root.addFilter(requestLimitFilterHolder, "/*", null);
+    }
+    if (config.isEnableRequestDeadline()) {
+      log.info(
+          "Interrupting requests after [{}] ms (0 for none), or the timeout they ask for in {}",
+          RequestDeadlineFilter.capTimeoutMillis(config.getDefaultQueryTimeout(), config.getMaxQueryTimeout()),
+          RequestDeadlineFilter.TIMEOUT_HEADER
+      );
+      // On the thread handling the request, which is interrupted once the request times out.
+      root.addFilter(
+          new FilterHolder(
+              new RequestDeadlineFilter(scheduler, config.getDefaultQueryTimeout(), config.getMaxQueryTimeout())
+          ),
+          "/*",
+          null
+      );
+    }
     root.addFilter(GuiceFilter.class, "/*", null);
     final HandlerList handlerList = new HandlerList();
     // Do not change the order of the handlers that have already been added
@@ -229,8 +335,48 @@ public class JettyServerModule extends JerseyServletModule
     handlerList.addHandler(root);
 
     final StatisticsHandler statisticsHandler = new StatisticsHandler();
-    statisticsHandler.setHandler(handlerList);
-    server.setHandler(statisticsHandler);
+    if (config.isEnableVirtualThreads()) {
+      // The virtual thread pool has no queue to bound.
+      final ConcurrencyLimitHandler concurrencyLimitHandler =
+          new ConcurrencyLimitHandler(config.getMaxVirtualThreadRequests());
+      concurrencyLimitHandler.setHandler(handlerList);
+      statisticsHandler.setHandler(concurrencyLimitHandler);
+    } else {
+      statisticsHandler.setHandler(handlerList);
+    }
+    if (queueTimeShedding) {
+      // Outside of the statistics, the shed requests would lower the latency seen by the AdaptiveRequestLimiter.
+      final long budgetMillis = getQueueWaitBudgetMillis(config);
+      log.info("Shedding requests queued for more than [{}] ms, except to {}", budgetMillis, UNLIMITED_PATHS);
+      final QueueTimeSheddingHandler sheddingHandler = new QueueTimeSheddingHandler(
+          (QueueTimeThreadPool) threadPool,
+          injector.getInstance(QueueWaitHistogram.class),
+          budgetMillis,
+          UNLIMITED_PATHS
+      );
+      sheddingHandler.setHandler(statisticsHandler);
+      server.setHandler(sheddingHandler);
+      for (ServerConnector connector : connectors) {
+        // Not managed, the server already is.
+        connector.addBean(sheddingHandler, false);
+      }
+    } else {
+      server.setHandler(statisticsHandler);
+    }
+
+    if (config.isEnableRequestLimit() && config.isEnableAdaptiveRequestLimit()) {
+      server.addBean(
+          new AdaptiveRequestLimiter(
+              statisticsHandler,
+              requestLimitFilter,
+              scheduler,
+              getMinAdaptiveRequestLimit(config),
+              getInitialAdaptiveRequestLimit(config),
+              config.getMaxActiveRequests()
+          ),
+          true
+      );
+    }
 
     return new JerseyJettyServer() {
       @Override
@@ -261,6 +407,60 @@ public class JettyServerModule extends JerseyServletModule
     };
   }
 
+  /**
+   * @return whether the server sheds requests which waited too long in the queue, which
+   * {@link ServerConfig#isEnableQueueTimeShedding()} doesn't do without a queue or a timeout
+   */
+  public static boolean isQueueTimeShedding(ServerConfig config)
+  {
+    return config.isEnableQueueTimeShedding()
+           && !config.isEnableVirtualThreads()
+           && getQueueWaitBudgetMillis(config) > 0;
+  }
+
+  /**
+   * @return how long requests may wait in the queue of the thread pool, {@link ServerConfig#getMaxQueueWaitPercent()}
+   * of their default timeout, which is the one of the {@link RequestDeadlineFilter}, or 0 if they have no timeout
+   */
+  public static long getQueueWaitBudgetMillis(ServerConfig config)
+  {
+    final long timeoutMillis =
+        RequestDeadlineFilter.capTimeoutMillis(config.getDefaultQueryTimeout(), config.getMaxQueryTimeout());
+    if (timeoutMillis == 0) {
+      return 0;
+    }
+    // Divided first when the product would overflow.
+    final long budgetMillis = timeoutMillis > Long.MAX_VALUE / 100
+                              ? timeoutMillis / 100 * config.getMaxQueueWaitPercent()
+                              : timeoutMillis * config.getMaxQueueWaitPercent() / 100;
+    return Math.max(1, budgetMillis);
+  }
+
+  /**
+   * @return the number of requests the server handles at once, each on its own thread
+   */
+  private static int getMaxHandledRequests(ServerConfig config)
+  {
+    return config.isEnableVirtualThreads() ? config.getMaxVirtualThreadRequests() : config.getNumThreads();
+  }
+
+  private static int getMinAdaptiveRequestLimit(ServerConfig config)
+  {
+    return Math.min(config.getMinActiveRequests(), config.getMaxActiveRequests());
+  }
+
+  /**
+   * @return the requests handled at once within the bounds of the limit, rather than the unbounded default of
+   * maxActiveRequests, which the limit would take minutes to shrink from
+   */
+  private static int getInitialAdaptiveRequestLimit(ServerConfig config)
+  {
+    return Math.max(
+        getMinAdaptiveRequestLimit(config),
+        Math.min(config.getMaxActiveRequests(), getMaxHandledRequests(config))
+    );
+  }
+
   private static int getMaxJettyAcceptorsSelectorsNum(ServerConfig config)
   {
     // This computation is based on Jetty v9.3.19 which uses upto 8(4 acceptors and 4 selectors) threads per
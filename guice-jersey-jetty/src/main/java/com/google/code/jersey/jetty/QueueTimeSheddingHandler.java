@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.common.collect.ImmutableSet;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rejects with a 503 the requests which waited longer than the budget in the queue of the {@link QueueTimeThreadPool},
+ * as their callers may have given up already, and records the wait of every request in a {@link QueueWaitHistogram}.
+ * Requests to the exempt paths are always handled.
+ *
+ * The wait is the one of the job which started handling the request, which is how long the request waited for a
+ * thread unless it arrived on a connection already being handled.  The first request of a connection also waited for
+ * the job which opened the connection, for which the handler must be a {@link Connection.Listener} bean of the
+ * connectors.
+ */
+public class QueueTimeSheddingHandler extends HandlerWrapper implements Connection.Listener
+{
+  private final QueueTimeThreadPool threadPool;
+  private final QueueWaitHistogram histogram;
+  private final long budgetMillis;
+  private final Set<String> exemptPaths;
+  // The waits of the jobs which opened the connections, until their first request.
+  private final Map<EndPoint, Long> connectionWaits = new ConcurrentHashMap<>();
+
+  public QueueTimeSheddingHandler(
+      QueueTimeThreadPool threadPool,
+      QueueWaitHistogram histogram,
+      long budgetMillis,
+      Set<String> exemptPaths
+  )
+  {
+    this.threadPool = threadPool;
+    this.histogram = histogram;
+    this.budgetMillis = budgetMillis;
+    this.exemptPaths = ImmutableSet.copyOf(exemptPaths);
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+      throws IOException, ServletException
+  {
+    // Async dispatches of the request didn't wait for the client.
+    if (baseRequest.getHttpChannelState().isInitial()) {
+      long waitMillis = threadPool.takeQueueWaitMillis();
+      final Long connectionWaitMillis = connectionWaits.remove(baseRequest.getHttpChannel().getEndPoint());
+      if (connectionWaitMillis != null) {
+        waitMillis = Math.max(0, waitMillis) + connectionWaitMillis;
+      }
+      if (waitMillis >= 0) {
+        histogram.record(waitMillis);
+        if (waitMillis > budgetMillis && !exemptPaths.contains(target)) {
+          histogram.recordShed();
+          baseRequest.setHandled(true);
+          response.sendError(
+              HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+              "Queued for [" + waitMillis + "] ms, over the budget of [" + budgetMillis + "] ms"
+          );
+          return;
+        }
+      }
+    }
+    super.handle(target, baseRequest, request, response);
+  }
+
+  @Override
+  public void onOpened(Connection connection)
+  {
+    // On the thread of the job which opened the connection.
+    final long waitMillis = threadPool.takeQueueWaitMillis();
+    if (waitMillis >= 0) {
+      connectionWaits.put(connection.getEndPoint(), waitMillis);
+    }
+  }
+
+  @Override
+  public void onClosed(Connection connection)
+  {
+    connectionWaits.remove(connection.getEndPoint());
+  }
+
+  public long getBudgetMillis()
+  {
+    return budgetMillis;
+  }
+}
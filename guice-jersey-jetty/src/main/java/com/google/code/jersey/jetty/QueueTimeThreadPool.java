@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link QueuedThreadPool} timestamping the jobs it queues, so that the job running on a thread tells how long it
+ * waited in the queue, see {@link QueueTimeSheddingHandler}.
+ */
+public class QueueTimeThreadPool extends QueuedThreadPool
+{
+  private final ThreadLocal<TimedJob> currentJob = new ThreadLocal<>();
+
+  /**
+   * @param queue The queue of the jobs, null for the unbounded default queue of {@link QueuedThreadPool}
+   */
+  public QueueTimeThreadPool(int numThreads, @Nullable BlockingQueue<Runnable> queue)
+  {
+    // Same idle timeout as the default one of QueuedThreadPool.
+    super(numThreads, numThreads, 60000, queue);
+    // A reserved thread is a job of the pool running the tasks handed to it, which would be handled with the wait of
+    // the reserved thread instead of going through the queue.
+    setReservedThreads(0);
+  }
+
+  @Override
+  public void execute(Runnable job)
+  {
+    super.execute(new TimedJob(job, System.nanoTime()));
+  }
+
+  /**
+   * @return how long the job running on the current thread waited in the queue, or -1 if the current thread doesn't
+   * run a queued job or if the wait was already taken, as a job may handle several requests of a connection
+   */
+  public long takeQueueWaitMillis()
+  {
+    final TimedJob job = currentJob.get();
+    if (job == null || job.taken) {
+      return -1;
+    }
+    job.taken = true;
+    return TimeUnit.NANOSECONDS.toMillis(job.startNanos - job.queuedNanos);
+  }
+
+  private class TimedJob implements Runnable
+  {
+    private final Runnable job;
+    private final long queuedNanos;
+    // Only used by the thread running the job.
+    private long startNanos;
+    private boolean taken = false;
+
+    TimedJob(Runnable job, long queuedNanos)
+    {
+      this.job = job;
+      this.queuedNanos = queuedNanos;
+    }
+
+    @Override
+    public void run()
+    {
+      startNanos = System.nanoTime();
+      currentJob.set(this);
+      try {
+        job.run();
+      }
+      finally {
+        currentJob.remove();
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return job.toString();
+    }
+  }
+}
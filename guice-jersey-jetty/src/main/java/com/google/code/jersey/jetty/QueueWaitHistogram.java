@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the requests by how long they waited in the queue of the Jetty thread pool, and those shed because they
+ * waited too long, see {@link QueueTimeSheddingHandler}.
+ */
+public class QueueWaitHistogram
+{
+  /** The upper bounds of the buckets, in milliseconds.  The last bucket counts the longer waits. */
+  private static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+  private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+  private final AtomicLong maxMillis = new AtomicLong();
+  private final AtomicLong shedRequests = new AtomicLong();
+
+  public void record(long waitMillis)
+  {
+    int bucket = 0;
+    while (bucket < BOUNDS.length && waitMillis > BOUNDS[bucket]) {
+      bucket++;
+    }
+    counts.incrementAndGet(bucket);
+    maxMillis.accumulateAndGet(waitMillis, Math::max);
+  }
+
+  public void recordShed()
+  {
+    shedRequests.incrementAndGet();
+  }
+
+  /**
+   * @return the number of requests by bucket, keyed by the upper bound of the bucket in milliseconds, the last one
+   * by "inf"
+   */
+  public Map<String, Long> getBuckets()
+  {
+    final Map<String, Long> buckets = new LinkedHashMap<>();
+    for (int i = 0; i < BOUNDS.length; i++) {
+      buckets.put(String.valueOf(BOUNDS[i]), counts.get(i));
+    }
+    buckets.put("inf", counts.get(BOUNDS.length));
+    return buckets;
+  }
+
+  public long getCount()
+  {
+    long count = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  public long getMaxMillis()
+  {
+    return maxMillis.get();
+  }
+
+  public long getShedRequests()
+  {
+    return shedRequests.get();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.code.jersey.exceptions.RequestTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadline of the request being handled, set by the {@link RequestDeadlineFilter}.  It is request scoped, so
+ * singleton resources inject a {@code Provider<RequestDeadline>}.
+ *
+ * When the deadline passes, the thread handling the request is interrupted, which cancels the blocking calls.  Long
+ * computations which don't block should call {@link #checkNotExpired()} now and then.  The interrupt must not be
+ * ignored: the response of an interrupted thread can't be written, Jetty closes the connection instead.
+ */
+public class RequestDeadline
+{
+  private enum State
+  {
+    RUNNING, DONE, EXPIRED
+  }
+
+  private final long startNanos;
+  private final long timeoutMillis;
+  private final Thread thread;
+  // Guarded by this.
+  private State state = State.RUNNING;
+
+  /**
+   * @param timeoutMillis The timeout of the request, 0 if it has none
+   */
+  RequestDeadline(long timeoutMillis, Thread thread)
+  {
+    this.startNanos = System.nanoTime();
+    this.timeoutMillis = timeoutMillis;
+    this.thread = thread;
+  }
+
+  /**
+   * @return the timeout of the request, 0 if it has none
+   */
+  public long getTimeoutMillis()
+  {
+    return timeoutMillis;
+  }
+
+  public long getElapsedMillis()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * @return the time left until the deadline, {@code Long.MAX_VALUE} if the request has no timeout
+   */
+  public long getRemainingMillis()
+  {
+    return timeoutMillis == 0 ? Long.MAX_VALUE : Math.max(0, timeoutMillis - getElapsedMillis());
+  }
+
+  public synchronized boolean isExpired()
+  {
+    return state == State.EXPIRED;
+  }
+
+  /**
+   * @throws RequestTimeoutException if the deadline passed, mapped to a 504.  The thread is not interrupted anymore,
+   * so that the response can be written.
+   */
+  public void checkNotExpired()
+  {
+    if (isExpired()) {
+      if (Thread.currentThread() == thread) {
+        Thread.interrupted();
+      }
+      throw new RequestTimeoutException(timeoutMillis, getElapsedMillis());
+    }
+  }
+
+  /**
+   * Interrupts the thread handling the request, unless it is done.
+   */
+  synchronized void expire()
+  {
+    if (state == State.RUNNING) {
+      state = State.EXPIRED;
+      thread.interrupt();
+    }
+  }
+
+  /**
+   * Called by the thread handling the request when it is done, after which it is not interrupted anymore.
+   *
+   * @return false if the deadline passed before
+   */
+  synchronized boolean finish()
+  {
+    if (state == State.RUNNING) {
+      state = State.DONE;
+    }
+    return state == State.DONE;
+  }
+}
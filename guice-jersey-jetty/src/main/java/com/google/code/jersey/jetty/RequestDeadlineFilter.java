@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.code.guice.common.utils.StringUtils;
+import com.google.code.jersey.exceptions.RequestTimeoutExceptionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives every request a {@link RequestDeadline}: the timeout asked by the client in the {@link #TIMEOUT_HEADER}
+ * header, in milliseconds, capped at the max timeout, or else the default one.  A timeout of 0 means none.
+ *
+ * The thread handling a request which overruns its deadline is interrupted, and a 504 is sent back with the timeout
+ * and the time spent, unless the response was already committed.
+ */
+@Slf4j
+public class RequestDeadlineFilter implements Filter
+{
+  public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+  public static final String DEADLINE_ATTRIBUTE = RequestDeadline.class.getName();
+
+  private final Scheduler scheduler;
+  private final long defaultTimeoutMillis;
+  private final long maxTimeoutMillis;
+
+  public RequestDeadlineFilter(Scheduler scheduler, long defaultTimeoutMillis, long maxTimeoutMillis)
+  {
+    this.scheduler = scheduler;
+    this.defaultTimeoutMillis = defaultTimeoutMillis;
+    this.maxTimeoutMillis = maxTimeoutMillis;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig)
+  {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException
+  {
+    final HttpServletResponse httpResponse = (HttpServletResponse) response;
+    final String header = ((HttpServletRequest) request).getHeader(TIMEOUT_HEADER);
+    long timeoutMillis = defaultTimeoutMillis;
+    if (header != null) {
+      try {
+        timeoutMillis = Long.parseLong(header.trim());
+      }
+      catch (NumberFormatException e) {
+        timeoutMillis = -1;
+      }
+      if (timeoutMillis < 0) {
+        httpResponse.sendError(
+            HttpServletResponse.SC_BAD_REQUEST,
+            StringUtils.format("Invalid %s[%s]", TIMEOUT_HEADER, header)
+        );
+        return;
+      }
+    }
+    timeoutMillis = capTimeoutMillis(timeoutMillis, maxTimeoutMillis);
+
+    final RequestDeadline deadline = new RequestDeadline(timeoutMillis, Thread.currentThread());
+    request.setAttribute(DEADLINE_ATTRIBUTE, deadline);
+    final Scheduler.Task task = timeoutMillis == 0
+                                ? null
+                                : scheduler.schedule(deadline::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+    final boolean finished;
+    try {
+      chain.doFilter(request, response);
+    }
+    catch (IOException | ServletException | RuntimeException e) {
+      if (deadline.finish()) {
+        throw e;
+      }
+      // Most likely caused by the interrupt.
+      log.debug("Request failed after its deadline", e);
+    }
+    finally {
+      if (task != null) {
+        task.cancel();
+      }
+      finished = deadline.finish();
+    }
+
+    if (!finished) {
+      // The interrupt was meant for the request, not for what the thread does next.
+      Thread.interrupted();
+      final long elapsedMillis = deadline.getElapsedMillis();
+      log.warn(
+          "Request [{}] timed out after [{}] ms, timeout [{}] ms",
+          ((HttpServletRequest) request).getRequestURI(),
+          elapsedMillis,
+          timeoutMillis
+      );
+      if (!response.isCommitted()) {
+        response.reset();
+        httpResponse.setStatus(RequestTimeoutExceptionMapper.SC_GATEWAY_TIMEOUT);
+        response.setContentType("application/json");
+        response.getWriter().write(StringUtils.format(
+            "{\"error\":\"Request timed out.\",\"timeoutMillis\":%s,\"elapsedMillis\":%s}",
+            timeoutMillis,
+            elapsedMillis
+        ));
+      }
+    }
+  }
+
+  /**
+   * @return the given timeout, or the max one if it is 0 or over it, 0 if that is {@code Long.MAX_VALUE}, as a
+   * timeout of 0 means none
+   */
+  static long capTimeoutMillis(long timeoutMillis, long maxTimeoutMillis)
+  {
+    if (timeoutMillis == 0 || timeoutMillis > maxTimeoutMillis) {
+      return maxTimeoutMillis == Long.MAX_VALUE ? 0 : maxTimeoutMillis;
+    }
+    return timeoutMillis;
+  }
+
+  @Override
+  public void destroy()
+  {
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the requests handled at once, rejecting the others right away with a 429.  Requests to the exempt paths, like
+ * the health check of the load balancers, are always handled.  The limit may be changed while requests are handled,
+ * see {@link AdaptiveRequestLimiter}.
+ *
+ * The filter sees the requests once a thread took them off the queue of the thread pool, it doesn't bound that queue.
+ * Requests in async mode are active until they complete.
+ */
+public class RequestLimitFilter implements Filter
+{
+  public static final int SC_TOO_MANY_REQUESTS = 429;
+
+  private volatile int maxActiveRequests;
+  private final Set<String> exemptPaths;
+  private final int retryAfterSeconds;
+  private final AtomicInteger activeRequests = new AtomicInteger();
+  private final AtomicLong rejectedRequests = new AtomicLong();
+  private final AtomicInteger peakActiveRequests = new AtomicInteger();
+
+  public RequestLimitFilter(int maxActiveRequests, Set<String> exemptPaths, int retryAfterSeconds)
+  {
+    this.maxActiveRequests = maxActiveRequests;
+    this.exemptPaths = ImmutableSet.copyOf(exemptPaths);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig)
+  {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException
+  {
+    if (isExempt((HttpServletRequest) request)) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    if (!tryAdmit()) {
+      rejectedRequests.incrementAndGet();
+      final HttpServletResponse httpResponse = (HttpServletResponse) response;
+      httpResponse.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+      httpResponse.sendError(
+          SC_TOO_MANY_REQUESTS,
+          "Too Many Requests, Max Active Requests[" + maxActiveRequests + "]"
+      );
+      return;
+    }
+
+    boolean async = false;
+    try {
+      chain.doFilter(request, response);
+      if (request.isAsyncStarted()) {
+        // The request is still active until it completes, on another thread.
+        request.getAsyncContext().addListener(new CompletionListener());
+        async = true;
+      }
+    }
+    finally {
+      if (!async) {
+        activeRequests.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Counts the request as active if that keeps the active requests within the limit.  Rejected requests are never
+   * counted, so that they neither get other requests rejected nor raise the peak.
+   */
+  private boolean tryAdmit()
+  {
+    while (true) {
+      final int curr = activeRequests.get();
+      if (curr >= maxActiveRequests) {
+        return false;
+      }
+      if (activeRequests.compareAndSet(curr, curr + 1)) {
+        peakActiveRequests.accumulateAndGet(curr + 1, Math::max);
+        return true;
+      }
+    }
+  }
+
+  private boolean isExempt(HttpServletRequest request)
+  {
+    final String uri = request.getRequestURI();
+    final String contextPath = request.getContextPath();
+    final String path = contextPath == null ? uri : uri.substring(contextPath.length());
+    return exemptPaths.contains(path);
+  }
+
+  @Override
+  public void destroy()
+  {
+  }
+
+  private class CompletionListener implements AsyncListener
+  {
+    @Override
+    public void onComplete(AsyncEvent event)
+    {
+      activeRequests.decrementAndGet();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event)
+    {
+    }
+
+    @Override
+    public void onError(AsyncEvent event)
+    {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event)
+    {
+      // Dispatched again and started async again, the listener must be added again to be notified of the completion.
+      event.getAsyncContext().addListener(this);
+    }
+  }
+
+  public int getMaxActiveRequests()
+  {
+    return maxActiveRequests;
+  }
+
+  public void setMaxActiveRequests(int maxActiveRequests)
+  {
+    this.maxActiveRequests = maxActiveRequests;
+  }
+
+  /**
+   * @return the most requests active at once since the last call
+   */
+  int getAndResetPeakActiveRequests()
+  {
+    return peakActiveRequests.getAndSet(activeRequests.get());
+  }
+
+  public int getActiveRequests()
+  {
+    return activeRequests.get();
+  }
+
+  public long getRejectedRequests()
+  {
+    return rejectedRequests.get();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Jetty thread pool running every task on a new thread of the given executor, typically a virtual thread, so that
+ * requests blocking on downstream calls don't hold a bounded number of pooled threads.  The requests are handled by
+ * the Jetty handlers on these threads, as on the threads of a {@code QueuedThreadPool}, so the context, paths and
+ * session of the requests are set up as usual.  There is no queue: the tasks run right away.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool
+{
+  private final Executor executor;
+  private final AtomicInteger threads = new AtomicInteger();
+  private final CountDownLatch stopped = new CountDownLatch(1);
+
+  public VirtualThreadPool(Executor executor)
+  {
+    this.executor = executor;
+  }
+
+  @Override
+  public void execute(Runnable task)
+  {
+    threads.incrementAndGet();
+    try {
+      executor.execute(() -> {
+        try {
+          task.run();
+        }
+        finally {
+          threads.decrementAndGet();
+        }
+      });
+    }
+    catch (RuntimeException e) {
+      threads.decrementAndGet();
+      throw e;
+    }
+  }
+
+  @Override
+  protected void doStop() throws Exception
+  {
+    stopped.countDown();
+    super.doStop();
+  }
+
+  @Override
+  public void join() throws InterruptedException
+  {
+    stopped.await();
+  }
+
+  @Override
+  public int getThreads()
+  {
+    return threads.get();
+  }
+
+  @Override
+  public int getIdleThreads()
+  {
+    return 0;
+  }
+
+  @Override
+  public boolean isLowOnThreads()
+  {
+    return false;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.code.guice.common.exceptions.UOE;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads on JDK 21+.  The project is compiled for older JDKs, so the {@code Thread.Builder} API is
+ * called by reflection.
+ */
+public final class VirtualThreads
+{
+  private VirtualThreads()
+  {
+  }
+
+  public static boolean isSupported()
+  {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    }
+    catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return an executor running every task on a new virtual thread, named with the given prefix and a counter
+   *
+   * @throws UOE if the JDK doesn't support virtual threads
+   */
+  public static Executor newExecutor(String namePrefix)
+  {
+    final ThreadFactory factory;
+    try {
+      final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+      factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    }
+    catch (ClassNotFoundException | NoSuchMethodException e) {
+      throw new UOE("Virtual threads require JDK 21+, running on [%s]", System.getProperty("java.version"));
+    }
+    catch (IllegalAccessException | InvocationTargetException e) {
+      throw new RuntimeException(e);
+    }
+    return task -> factory.newThread(task).start();
+  }
+}
@@ -23,6 +23,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.code.guice.common.utils.JvmUtils;
 import com.google.code.guice.common.utils.RuntimeInfo;
 import com.google.code.guice.common.utils.StringUtils;
+import com.google.code.jersey.ServerConfig;
+import com.google.code.jersey.jetty.JettyServerModule;
+import com.google.code.jersey.jetty.QueueWaitHistogram;
+import com.google.code.jersey.jetty.RequestLimitFilter;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
@@ -43,11 +47,22 @@ import java.util.Set;
 public class StatusResource
 {
   private final Properties properties;
+  private final ServerConfig serverConfig;
+  private final RequestLimitFilter requestLimitFilter;
+  private final QueueWaitHistogram queueWaitHistogram;
 
   @Inject
-  public StatusResource(Properties properties)
+  public StatusResource(
+      Properties properties,
+      ServerConfig serverConfig,
+      RequestLimitFilter requestLimitFilter,
+      QueueWaitHistogram queueWaitHistogram
+  )
   {
     this.properties = properties;
+    this.serverConfig = serverConfig;
+    this.requestLimitFilter = requestLimitFilter;
+    this.queueWaitHistogram = queueWaitHistogram;
   }
 
   @GET
@@ -81,6 +96,22 @@ public class StatusResource
     return true;
   }
 
+  @GET
+  @Path("/requestLimit")
+  @Produces(MediaType.APPLICATION_JSON)
+  public RequestLimit getRequestLimit()
+  {
+    return new RequestLimit(serverConfig, requestLimitFilter);
+  }
+
+  @GET
+  @Path("/queueWait")
+  @Produces(MediaType.APPLICATION_JSON)
+  public QueueWait getQueueWait()
+  {
+    return new QueueWait(serverConfig, queueWaitHistogram);
+  }
+
   public static class Status
   {
     final String version;
@@ -175,4 +206,114 @@ public class StatusResource
       return directMemory;
     }
   }
+
+  public static class RequestLimit
+  {
+    final boolean enabled;
+    final boolean adaptive;
+    final int limit;
+    final int activeRequests;
+    final long rejectedRequests;
+
+    public RequestLimit(ServerConfig config, RequestLimitFilter filter)
+    {
+      enabled = config.isEnableRequestLimit();
+      adaptive = enabled && config.isEnableAdaptiveRequestLimit();
+      limit = filter.getMaxActiveRequests();
+      activeRequests = filter.getActiveRequests();
+      rejectedRequests = filter.getRejectedRequests();
+    }
+
+    @JsonProperty
+    public boolean isEnabled()
+    {
+      return enabled;
+    }
+
+    @JsonProperty
+    public boolean isAdaptive()
+    {
+      return adaptive;
+    }
+
+    @JsonProperty
+    public int getLimit()
+    {
+      return limit;
+    }
+
+    @JsonProperty
+    public int getActiveRequests()
+    {
+      return activeRequests;
+    }
+
+    @JsonProperty
+    public long getRejectedRequests()
+    {
+      return rejectedRequests;
+    }
+  }
+
+  public static class QueueWait
+  {
+    final boolean enabled;
+    final long budgetMillis;
+    final long count;
+    final long maxMillis;
+    final long shedRequests;
+    final Map<String, Long> buckets;
+
+    public QueueWait(ServerConfig config, QueueWaitHistogram histogram)
+    {
+      enabled = JettyServerModule.isQueueTimeShedding(config);
+      budgetMillis = JettyServerModule.getQueueWaitBudgetMillis(config);
+      count = histogram.getCount();
+      maxMillis = histogram.getMaxMillis();
+      shedRequests = histogram.getShedRequests();
+      buckets = histogram.getBuckets();
+    }
+
+    @JsonProperty
+    public boolean isEnabled()
+    {
+      return enabled;
+    }
+
+    /**
+     * How long requests may wait in the queue, 0 if they have no timeout.
+     */
+    @JsonProperty
+    public long getBudgetMillis()
+    {
+      return budgetMillis;
+    }
+
+    @JsonProperty
+    public long getCount()
+    {
+      return count;
+    }
+
+    @JsonProperty
+    public long getMaxMillis()
+    {
+      return maxMillis;
+    }
+
+    @JsonProperty
+    public long getShedRequests()
+    {
+      return shedRequests;
+    }
+
+    /**
+     * The number of requests by how long they waited, keyed by the upper bound of the wait in milliseconds.
+     */
+    @JsonProperty
+    public Map<String, Long> getBuckets()
+    {
+      return buckets;
+    }
+  }
 }
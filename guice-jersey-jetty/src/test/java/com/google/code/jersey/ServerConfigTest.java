@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.code.guice.jsonconfig.ConfigBinders;
+import com.google.code.guice.jsonconfig.JsonConfigurator;
+import com.google.inject.ProvisionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServerConfigTest
+{
+  private static final String PREFIX = "server.http";
+
+  @Test
+  public void testBoundByTheGeneratedBinder()
+  {
+    Assert.assertNotNull(ConfigBinders.forClass(ServerConfig.class));
+
+    final AtomicInteger validations = new AtomicInteger();
+    final Validator delegate = Validation.buildDefaultValidatorFactory().getValidator();
+    final Validator validator = (Validator) Proxy.newProxyInstance(
+        Validator.class.getClassLoader(),
+        new Class[]{Validator.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("validate")) {
+            validations.incrementAndGet();
+          }
+          return method.invoke(delegate, args);
+        }
+    );
+    final JsonConfigurator configurator = new JsonConfigurator(new ObjectMapper(), validator);
+
+    final Properties properties = new Properties();
+    properties.setProperty(PREFIX + ".host", "0.0.0.0");
+    properties.setProperty(PREFIX + ".port", "8081");
+    properties.setProperty(PREFIX + ".numThreads", "4");
+    properties.setProperty(PREFIX + ".enableRequestLimit", "true");
+    properties.setProperty(PREFIX + ".defaultQueryTimeout", "1000");
+    final ServerConfig config = configurator.configurate(properties, PREFIX, ServerConfig.class);
+    Assert.assertEquals("0.0.0.0", config.getHost());
+    Assert.assertEquals(8081, config.getPort());
+    Assert.assertEquals(4, config.getNumThreads());
+    Assert.assertTrue(config.isEnableRequestLimit());
+    Assert.assertEquals(1000, config.getDefaultQueryTimeout());
+    // The binder set the private fields and checked the constraints, the Validator wasn't needed.
+    Assert.assertEquals(0, validations.get());
+
+    properties.setProperty(PREFIX + ".port", "65536");
+    try {
+      configurator.configurate(properties, PREFIX, ServerConfig.class);
+      Assert.fail("Invalid configs are rejected");
+    }
+    catch (ProvisionException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("port - must be less than or equal to 65535"));
+    }
+    Assert.assertEquals(1, validations.get());
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveRequestLimiterTest
+{
+  private static final int MIN_LIMIT = 10;
+  private static final int MAX_LIMIT = 100;
+  private static final int NUM_THREADS = 50;
+  private static final int WINDOW_REQUESTS = 100;
+
+  private FakeStatisticsHandler statistics;
+  private RequestLimitFilter filter;
+  private long nanos;
+  private AdaptiveRequestLimiter limiter;
+
+  @Before
+  public void setUp()
+  {
+    statistics = new FakeStatisticsHandler();
+    filter = new RequestLimitFilter(MAX_LIMIT, ImmutableSet.of(), 1);
+    limiter = new AdaptiveRequestLimiter(statistics, filter, null, MIN_LIMIT, MAX_LIMIT, MAX_LIMIT, () -> nanos);
+  }
+
+  @Test
+  public void testShrinksUnderRisingLatencyAndRecovers() throws Exception
+  {
+    window(10, 0);
+    Assert.assertEquals(MAX_LIMIT, filter.getMaxActiveRequests());
+
+    // Within the tolerance of the lowest latency.
+    window(15, 0);
+    Assert.assertEquals(MAX_LIMIT, filter.getMaxActiveRequests());
+
+    int last = MAX_LIMIT;
+    for (long latency = 20; latency <= 640; latency *= 2) {
+      window(latency, last);
+      Assert.assertTrue(filter.getMaxActiveRequests() + " < " + last, filter.getMaxActiveRequests() < last);
+      last = filter.getMaxActiveRequests();
+    }
+
+    // Back to the lowest latency, with the limit used, the limit grows back up to the static one.
+    for (int i = 0; i < 50 && last < MAX_LIMIT; i++) {
+      window(10, last);
+      Assert.assertTrue(filter.getMaxActiveRequests() + " > " + last, filter.getMaxActiveRequests() > last);
+      last = filter.getMaxActiveRequests();
+    }
+    Assert.assertEquals(MAX_LIMIT, last);
+    window(10, MAX_LIMIT);
+    Assert.assertEquals(MAX_LIMIT, filter.getMaxActiveRequests());
+  }
+
+  @Test
+  public void testNeverShrinksBelowTheFloor() throws Exception
+  {
+    window(10, 0);
+    for (int i = 0; i < 50; i++) {
+      window(1000, filter.getMaxActiveRequests());
+      Assert.assertTrue(String.valueOf(filter.getMaxActiveRequests()), filter.getMaxActiveRequests() >= MIN_LIMIT);
+    }
+    Assert.assertEquals(MIN_LIMIT, filter.getMaxActiveRequests());
+  }
+
+  @Test
+  public void testDoesntGrowWhenTheLimitIsNotUsed() throws Exception
+  {
+    window(10, 0);
+    window(100, MAX_LIMIT);
+    final int shrunk = filter.getMaxActiveRequests();
+    Assert.assertTrue(shrunk < MAX_LIMIT);
+
+    window(10, shrunk / 2 - 1);
+    Assert.assertEquals(shrunk, filter.getMaxActiveRequests());
+    window(10, shrunk);
+    Assert.assertTrue(filter.getMaxActiveRequests() > shrunk);
+  }
+
+  @Test
+  public void testIgnoresWindowsWithTooFewRequests() throws Exception
+  {
+    window(10, 0);
+    statistics.record(9, 1000);
+    nanos += TimeUnit.SECONDS.toNanos(1);
+    limiter.update();
+    Assert.assertEquals(MAX_LIMIT, filter.getMaxActiveRequests());
+  }
+
+  @Test
+  public void testKeepsTheLowestLatencyForTenMinutes() throws Exception
+  {
+    window(10, 0);
+    // Requests became slower for good, the lowest latency is still the one before, the limit stays shrunk.
+    while (nanos < TimeUnit.MINUTES.toNanos(10) - TimeUnit.SECONDS.toNanos(1)) {
+      window(50, filter.getMaxActiveRequests());
+    }
+    Assert.assertEquals(MIN_LIMIT, filter.getMaxActiveRequests());
+
+    // Every minute of the window saw the slower requests, their latency is the lowest one, the limit grows again.
+    for (int i = 0; i < 3; i++) {
+      window(50, filter.getMaxActiveRequests());
+    }
+    Assert.assertTrue(String.valueOf(filter.getMaxActiveRequests()), filter.getMaxActiveRequests() > MIN_LIMIT);
+  }
+
+  @Test
+  public void testKeepsTheLowestLatencyOfTheWindow() throws Exception
+  {
+    window(20, 0);
+    nanos += TimeUnit.MINUTES.toNanos(5);
+    window(10, 0);
+    nanos += TimeUnit.MINUTES.toNanos(5);
+    // The lowest latency of the first minute left the window, not the one of the sixth.
+    window(20, MAX_LIMIT);
+    Assert.assertTrue(String.valueOf(filter.getMaxActiveRequests()), filter.getMaxActiveRequests() < MAX_LIMIT);
+  }
+
+  @Test
+  public void testLimitIsReportedByTheStatus() throws Exception
+  {
+    final int port = TestServers.freePort();
+    final Injector injector = TestServers.createInjector(
+        ImmutableMap.of(
+            "port", String.valueOf(port),
+            "enableRequestLimit", "true",
+            "enableAdaptiveRequestLimit", "true",
+            "maxActiveRequests", String.valueOf(MAX_LIMIT),
+            "numThreads", String.valueOf(NUM_THREADS)
+        )
+    );
+    final JerseyJettyServer server = injector.getInstance(JerseyJettyServer.class);
+    server.start();
+    try {
+      JsonNode status = getRequestLimit(port);
+      Assert.assertTrue(status.toString(), status.get("enabled").asBoolean());
+      Assert.assertTrue(status.toString(), status.get("adaptive").asBoolean());
+      // The limit starts from the requests handled at once, below the configured one.
+      Assert.assertEquals(status.toString(), NUM_THREADS, status.get("limit").asInt());
+
+      // The limiter of the server sees too few requests to change the limit, this one shrinks it.
+      filter = injector.getInstance(RequestLimitFilter.class);
+      limiter = new AdaptiveRequestLimiter(statistics, filter, null, MIN_LIMIT, NUM_THREADS, MAX_LIMIT, () -> nanos);
+      window(10, 0);
+      window(1000, 0);
+      Assert.assertTrue(filter.getMaxActiveRequests() < NUM_THREADS);
+
+      status = getRequestLimit(port);
+      Assert.assertEquals(status.toString(), filter.getMaxActiveRequests(), status.get("limit").asInt());
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  private static JsonNode getRequestLimit(int port) throws Exception
+  {
+    final TestServers.Response response = TestServers.get(port, "/status/requestLimit", ImmutableMap.of());
+    Assert.assertEquals(response.toString(), 200, response.status);
+    return new ObjectMapper().readTree(response.body);
+  }
+
+  /**
+   * Records a second of requests with the given latency, while the given number of requests were active at once at
+   * the peak, and updates the limit.
+   */
+  private void window(long latencyMillis, int peakActiveRequests) throws Exception
+  {
+    statistics.record(WINDOW_REQUESTS, WINDOW_REQUESTS * latencyMillis);
+    activate(peakActiveRequests);
+    nanos += TimeUnit.SECONDS.toNanos(1);
+    limiter.update();
+  }
+
+  /**
+   * Makes the given number of requests active at once in the filter, however high its limit.
+   */
+  private void activate(int requests) throws Exception
+  {
+    final int limit = filter.getMaxActiveRequests();
+    filter.setMaxActiveRequests(Integer.MAX_VALUE);
+    final HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(),
+        new Class<?>[]{HttpServletRequest.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getRequestURI":
+              return "/limited";
+            case "getContextPath":
+              return "";
+            case "isAsyncStarted":
+              return false;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        }
+    );
+    nest(request, requests);
+    filter.setMaxActiveRequests(limit);
+  }
+
+  private void nest(HttpServletRequest request, int depth) throws IOException, ServletException
+  {
+    if (depth > 0) {
+      filter.doFilter(request, null, (req, resp) -> nest(request, depth - 1));
+    }
+  }
+
+  private static class FakeStatisticsHandler extends StatisticsHandler
+  {
+    private int requests;
+    private long requestTime;
+
+    void record(int requests, long requestTimeMillis)
+    {
+      this.requests += requests;
+      this.requestTime += requestTimeMillis;
+    }
+
+    @Override
+    public int getRequests()
+    {
+      return requests;
+    }
+
+    @Override
+    public long getRequestTimeTotal()
+    {
+      return requestTime;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Holds the requests until {@link #release} is counted down, once {@link #entered} was.
+ */
+@Path("/blocking")
+public class BlockingResource
+{
+  static volatile CountDownLatch entered = new CountDownLatch(0);
+  static volatile CountDownLatch release = new CountDownLatch(0);
+
+  @GET
+  public String get() throws InterruptedException
+  {
+    entered.countDown();
+    release.await();
+    return "released";
+  }
+}
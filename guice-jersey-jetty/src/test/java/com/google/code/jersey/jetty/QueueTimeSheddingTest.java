@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.code.jersey.ServerConfig;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Injector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class QueueTimeSheddingTest
+{
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void testBudgetIsAPercentOfTheDefaultTimeout()
+  {
+    Assert.assertEquals(30_000, budget(ImmutableMap.of()));
+    Assert.assertEquals(250, budget(ImmutableMap.of("defaultQueryTimeout", 1000, "maxQueueWaitPercent", 25)));
+    // The default timeout is capped at the max one, and 0 means the max one.
+    Assert.assertEquals(100, budget(ImmutableMap.of("defaultQueryTimeout", 2000, "maxQueryTimeout", 1000)));
+    Assert.assertEquals(500, budget(ImmutableMap.of("defaultQueryTimeout", 0, "maxQueryTimeout", 5000)));
+    // At least a millisecond, without overflowing.
+    Assert.assertEquals(1, budget(ImmutableMap.of("defaultQueryTimeout", 5, "maxQueueWaitPercent", 1)));
+    Assert.assertEquals(
+        (Long.MAX_VALUE - 1) / 100 * 10,
+        budget(ImmutableMap.of("defaultQueryTimeout", 0, "maxQueryTimeout", Long.MAX_VALUE - 1))
+    );
+  }
+
+  @Test
+  public void testNoBudgetWithoutTimeout() throws Exception
+  {
+    Assert.assertEquals(0, budget(ImmutableMap.of("defaultQueryTimeout", 0)));
+
+    final int port = TestServers.freePort();
+    final JerseyJettyServer server = TestServers.createInjector(
+        ImmutableMap.of(
+            "port", String.valueOf(port),
+            "enableQueueTimeShedding", "true",
+            "defaultQueryTimeout", "0"
+        )
+    ).getInstance(JerseyJettyServer.class);
+    server.start();
+    try {
+      final JsonNode queueWait = getQueueWait(port);
+      Assert.assertFalse(queueWait.toString(), queueWait.get("enabled").asBoolean());
+      Assert.assertEquals(queueWait.toString(), 0, queueWait.get("budgetMillis").asLong());
+      Assert.assertEquals(queueWait.toString(), 0, queueWait.get("count").asLong());
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testShedsRequestsQueuedOverTheBudget() throws Exception
+  {
+    final int port = TestServers.freePort();
+    final Injector injector = TestServers.createInjector(
+        ImmutableMap.of(
+            "port", String.valueOf(port),
+            "numThreads", "1",
+            "enableQueueTimeShedding", "true",
+            "defaultQueryTimeout", "10000",
+            "maxQueueWaitPercent", "1"
+        ),
+        BlockingResource.class
+    );
+    final JerseyJettyServer server = injector.getInstance(JerseyJettyServer.class);
+    server.start();
+    final int blockingRequests = 20;
+    final ExecutorService client = Executors.newFixedThreadPool(blockingRequests + 1);
+    try {
+      BlockingResource.entered = new CountDownLatch(1);
+      BlockingResource.release = new CountDownLatch(1);
+      final List<Future<TestServers.Response>> blocked = new ArrayList<>();
+      for (int i = 0; i < blockingRequests; i++) {
+        blocked.add(client.submit(() -> TestServers.get(port, "/blocking", ImmutableMap.of())));
+      }
+      Assert.assertTrue(BlockingResource.entered.await(10, TimeUnit.SECONDS));
+      // Queued behind the blocked requests, for longer than the budget.
+      final Future<TestServers.Response> health =
+          client.submit(() -> TestServers.get(port, "/status/health", ImmutableMap.of()));
+      Thread.sleep(500);
+      BlockingResource.release.countDown();
+
+      final TestServers.Response healthResponse = health.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(healthResponse.toString(), 200, healthResponse.status);
+      int shed = 0;
+      for (Future<TestServers.Response> future : blocked) {
+        final TestServers.Response response = future.get(10, TimeUnit.SECONDS);
+        if (response.status == 503) {
+          Assert.assertTrue(response.body, response.body.contains("over the budget of [100] ms"));
+          shed++;
+        } else {
+          Assert.assertEquals(response.toString(), 200, response.status);
+        }
+      }
+      Assert.assertTrue("No request shed", shed > 0);
+      Assert.assertTrue("All requests shed", shed < blockingRequests);
+
+      final JsonNode queueWait = getQueueWait(port);
+      Assert.assertTrue(queueWait.toString(), queueWait.get("enabled").asBoolean());
+      Assert.assertEquals(queueWait.toString(), 100, queueWait.get("budgetMillis").asLong());
+      Assert.assertEquals(queueWait.toString(), shed, queueWait.get("shedRequests").asLong());
+      Assert.assertTrue(queueWait.toString(), queueWait.get("maxMillis").asLong() >= 500);
+      long bucketed = 0;
+      for (JsonNode bucket : queueWait.get("buckets")) {
+        bucketed += bucket.asLong();
+      }
+      Assert.assertEquals(queueWait.toString(), queueWait.get("count").asLong(), bucketed);
+      Assert.assertTrue(queueWait.toString(), queueWait.get("buckets").get("1000").asLong() > 0);
+    }
+    finally {
+      BlockingResource.release.countDown();
+      client.shutdownNow();
+      server.stop();
+    }
+  }
+
+  private static long budget(Map<String, ?> properties)
+  {
+    return JettyServerModule.getQueueWaitBudgetMillis(MAPPER.convertValue(properties, ServerConfig.class));
+  }
+
+  private static JsonNode getQueueWait(int port) throws Exception
+  {
+    final TestServers.Response response = TestServers.get(port, "/status/queueWait", ImmutableMap.of());
+    Assert.assertEquals(response.toString(), 200, response.status);
+    return MAPPER.readTree(response.body);
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestDeadlineFilterTest
+{
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final long DEFAULT_TIMEOUT_MILLIS = 100;
+  private static final long MAX_TIMEOUT_MILLIS = 200;
+
+  private final BlockingQueue<Boolean> interruptedAfter = new LinkedBlockingQueue<>();
+  private final AtomicInteger handled = new AtomicInteger();
+  private ScheduledExecutorScheduler scheduler;
+  private Server server;
+  private int port;
+
+  @Before
+  public void setUp() throws Exception
+  {
+    scheduler = new ScheduledExecutorScheduler("deadline-test", true);
+    scheduler.start();
+
+    final ServletContextHandler root = new ServletContextHandler();
+    root.addFilter(new FilterHolder(new InterruptRecordingFilter()), "/*", null);
+    root.addFilter(
+        new FilterHolder(new RequestDeadlineFilter(scheduler, DEFAULT_TIMEOUT_MILLIS, MAX_TIMEOUT_MILLIS)),
+        "/*",
+        null
+    );
+    root.addServlet(new ServletHolder(new SleepingServlet()), "/*");
+    server = new Server();
+    final ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(root);
+    server.start();
+    port = connector.getLocalPort();
+  }
+
+  @After
+  public void tearDown() throws Exception
+  {
+    server.stop();
+    scheduler.stop();
+  }
+
+  @Test
+  public void testDefaultTimeout() throws Exception
+  {
+    final JsonNode body = assertTimedOut(TestServers.get(port, "/sleep", ImmutableMap.of()));
+    Assert.assertEquals(DEFAULT_TIMEOUT_MILLIS, body.get("timeoutMillis").asLong());
+  }
+
+  @Test
+  public void testTimeoutOfTheHeader() throws Exception
+  {
+    JsonNode body = assertTimedOut(
+        TestServers.get(port, "/sleep", ImmutableMap.of(RequestDeadlineFilter.TIMEOUT_HEADER, "150"))
+    );
+    Assert.assertEquals(150, body.get("timeoutMillis").asLong());
+
+    // Capped at the max timeout, which also stands for 0.
+    body = assertTimedOut(
+        TestServers.get(port, "/sleep", ImmutableMap.of(RequestDeadlineFilter.TIMEOUT_HEADER, "60000"))
+    );
+    Assert.assertEquals(MAX_TIMEOUT_MILLIS, body.get("timeoutMillis").asLong());
+    body = assertTimedOut(
+        TestServers.get(port, "/sleep", ImmutableMap.of(RequestDeadlineFilter.TIMEOUT_HEADER, " 0 "))
+    );
+    Assert.assertEquals(MAX_TIMEOUT_MILLIS, body.get("timeoutMillis").asLong());
+  }
+
+  @Test
+  public void testMalformedHeader() throws Exception
+  {
+    for (String header : new String[]{"soon", "-1", "1.5", ""}) {
+      final TestServers.Response response =
+          TestServers.get(port, "/sleep", ImmutableMap.of(RequestDeadlineFilter.TIMEOUT_HEADER, header));
+      Assert.assertEquals(response.toString(), 400, response.status);
+      Assert.assertTrue(response.body, response.body.contains("Invalid " + RequestDeadlineFilter.TIMEOUT_HEADER));
+    }
+    Assert.assertEquals(0, handled.get());
+  }
+
+  @Test
+  public void testDoneBeforeTheDeadline() throws Exception
+  {
+    final TestServers.Response response = TestServers.get(port, "/fast", ImmutableMap.of());
+    Assert.assertEquals(response.toString(), 200, response.status);
+    Assert.assertEquals("fast", response.body);
+    Assert.assertEquals(Boolean.FALSE, interruptedAfter.poll(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCapTimeoutMillis()
+  {
+    Assert.assertEquals(100, RequestDeadlineFilter.capTimeoutMillis(100, 200));
+    Assert.assertEquals(200, RequestDeadlineFilter.capTimeoutMillis(300, 200));
+    Assert.assertEquals(200, RequestDeadlineFilter.capTimeoutMillis(0, 200));
+    Assert.assertEquals(100, RequestDeadlineFilter.capTimeoutMillis(100, Long.MAX_VALUE));
+    Assert.assertEquals(0, RequestDeadlineFilter.capTimeoutMillis(0, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testInstalledWhenEnabled() throws Exception
+  {
+    Assert.assertEquals("0", getDeadlineOfTheModule(ImmutableMap.of()));
+    Assert.assertEquals("0", getDeadlineOfTheModule(ImmutableMap.of("defaultQueryTimeout", "1000")));
+    Assert.assertEquals(
+        "1000",
+        getDeadlineOfTheModule(ImmutableMap.of("enableRequestDeadline", "true", "defaultQueryTimeout", "1000"))
+    );
+  }
+
+  /**
+   * @return the body of the 504 of a timed out request, after checking that the thread handling it was not left
+   * interrupted
+   */
+  private JsonNode assertTimedOut(TestServers.Response response) throws Exception
+  {
+    Assert.assertEquals(response.toString(), 504, response.status);
+    final JsonNode body = MAPPER.readTree(response.body);
+    Assert.assertEquals(response.body, "Request timed out.", body.get("error").asText());
+    Assert.assertTrue(response.body, body.get("elapsedMillis").asLong() >= body.get("timeoutMillis").asLong());
+    Assert.assertEquals(Boolean.FALSE, interruptedAfter.poll(10, TimeUnit.SECONDS));
+    return body;
+  }
+
+  private static String getDeadlineOfTheModule(ImmutableMap<String, String> properties) throws Exception
+  {
+    final int port = TestServers.freePort();
+    final JerseyJettyServer server = TestServers.createInjector(
+        ImmutableMap.<String, String>builder().putAll(properties).put("port", String.valueOf(port)).build(),
+        DeadlineResource.class
+    ).getInstance(JerseyJettyServer.class);
+    server.start();
+    try {
+      final TestServers.Response response = TestServers.get(port, "/deadline", ImmutableMap.of());
+      Assert.assertEquals(response.toString(), 200, response.status);
+      return response.body;
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * Records whether the thread which handled the request was left interrupted.
+   */
+  private class InterruptRecordingFilter implements Filter
+  {
+    @Override
+    public void init(FilterConfig filterConfig)
+    {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException
+    {
+      try {
+        chain.doFilter(request, response);
+      }
+      finally {
+        // Cleared, not to break the next requests of the thread if the filter did not.
+        interruptedAfter.add(Thread.interrupted());
+      }
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+  }
+
+  /**
+   * Sleeps until interrupted, restoring the interrupt as well-behaved code does.
+   */
+  private class SleepingServlet extends HttpServlet
+  {
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+    {
+      handled.incrementAndGet();
+      if ("/fast".equals(req.getRequestURI())) {
+        resp.getWriter().write("fast");
+        return;
+      }
+      try {
+        Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+        resp.getWriter().write("slept");
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Path("/deadline")
+  public static class DeadlineResource
+  {
+    private final Provider<RequestDeadline> deadline;
+
+    @Inject
+    public DeadlineResource(Provider<RequestDeadline> deadline)
+    {
+      this.deadline = deadline;
+    }
+
+    @GET
+    public String get()
+    {
+      return String.valueOf(deadline.get().getTimeoutMillis());
+    }
+  }
+}
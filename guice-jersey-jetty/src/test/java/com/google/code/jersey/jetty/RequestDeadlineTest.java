@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.code.jersey.exceptions.RequestTimeoutException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestDeadlineTest
+{
+  @After
+  public void tearDown()
+  {
+    // Not to leak the interrupts of the tests.
+    Thread.interrupted();
+  }
+
+  @Test
+  public void testDoneBeforeTheDeadline()
+  {
+    final RequestDeadline deadline = new RequestDeadline(60_000, Thread.currentThread());
+    Assert.assertTrue(deadline.finish());
+
+    // Too late, the thread does something else now.
+    deadline.expire();
+    Assert.assertFalse(deadline.isExpired());
+    Assert.assertFalse(Thread.currentThread().isInterrupted());
+    Assert.assertTrue(deadline.finish());
+    deadline.checkNotExpired();
+  }
+
+  @Test
+  public void testExpiredBeforeDone()
+  {
+    final RequestDeadline deadline = new RequestDeadline(60_000, Thread.currentThread());
+    Assert.assertFalse(deadline.isExpired());
+    deadline.checkNotExpired();
+
+    deadline.expire();
+    Assert.assertTrue(deadline.isExpired());
+    Assert.assertTrue(Thread.currentThread().isInterrupted());
+    // Expired once.
+    deadline.expire();
+    Assert.assertFalse(deadline.finish());
+    Assert.assertTrue(deadline.isExpired());
+  }
+
+  @Test
+  public void testCheckNotExpiredClearsTheInterrupt()
+  {
+    final RequestDeadline deadline = new RequestDeadline(60_000, Thread.currentThread());
+    deadline.expire();
+    try {
+      deadline.checkNotExpired();
+      Assert.fail("Not expired");
+    }
+    catch (RequestTimeoutException e) {
+      Assert.assertEquals(60_000, e.getTimeoutMillis());
+      Assert.assertTrue(e.getElapsedMillis() >= 0);
+    }
+    // So that the response can be written.
+    Assert.assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  public void testCheckNotExpiredOnAnotherThread() throws Exception
+  {
+    final Thread handler = new Thread(() -> {
+    });
+    final RequestDeadline deadline = new RequestDeadline(60_000, handler);
+    deadline.expire();
+    Thread.currentThread().interrupt();
+    try {
+      deadline.checkNotExpired();
+      Assert.fail("Not expired");
+    }
+    catch (RequestTimeoutException e) {
+      // Only the interrupt of the thread handling the request is cleared.
+      Assert.assertTrue(Thread.currentThread().isInterrupted());
+    }
+  }
+
+  @Test
+  public void testRemainingMillis()
+  {
+    Assert.assertEquals(Long.MAX_VALUE, new RequestDeadline(0, Thread.currentThread()).getRemainingMillis());
+    final RequestDeadline deadline = new RequestDeadline(60_000, Thread.currentThread());
+    Assert.assertEquals(60_000, deadline.getTimeoutMillis());
+    Assert.assertTrue(deadline.getRemainingMillis() <= 60_000);
+    Assert.assertTrue(deadline.getRemainingMillis() > 0);
+  }
+}
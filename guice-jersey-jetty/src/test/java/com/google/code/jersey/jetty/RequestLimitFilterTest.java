@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class RequestLimitFilterTest
+{
+  @Test
+  public void testRejectsRequestsOverTheLimit() throws Exception
+  {
+    final int port = TestServers.freePort();
+    final Injector injector = TestServers.createInjector(
+        ImmutableMap.of(
+            "port", String.valueOf(port),
+            "enableRequestLimit", "true",
+            "maxActiveRequests", "1"
+        ),
+        BlockingResource.class
+    );
+    final RequestLimitFilter filter = injector.getInstance(RequestLimitFilter.class);
+    final JerseyJettyServer server = injector.getInstance(JerseyJettyServer.class);
+    server.start();
+    final ExecutorService client = Executors.newSingleThreadExecutor();
+    try {
+      BlockingResource.entered = new CountDownLatch(1);
+      BlockingResource.release = new CountDownLatch(1);
+      final Future<TestServers.Response> blocked = client.submit(
+          () -> TestServers.get(port, "/blocking", ImmutableMap.of())
+      );
+      Assert.assertTrue(BlockingResource.entered.await(10, TimeUnit.SECONDS));
+      Assert.assertEquals(1, filter.getActiveRequests());
+
+      final TestServers.Response rejected = TestServers.get(port, "/blocking", ImmutableMap.of());
+      Assert.assertEquals(rejected.toString(), RequestLimitFilter.SC_TOO_MANY_REQUESTS, rejected.status);
+      Assert.assertEquals("1", rejected.getHeader("Retry-After"));
+      Assert.assertEquals(1, filter.getRejectedRequests());
+      // Rejected requests are never counted as active.
+      Assert.assertEquals(1, filter.getActiveRequests());
+      Assert.assertEquals(1, filter.getAndResetPeakActiveRequests());
+      // The health check is exempt.
+      Assert.assertEquals(200, TestServers.get(port, "/status/health", ImmutableMap.of()).status);
+
+      BlockingResource.release.countDown();
+      Assert.assertEquals(200, blocked.get(10, TimeUnit.SECONDS).status);
+      Assert.assertEquals(0, filter.getActiveRequests());
+      Assert.assertEquals(200, TestServers.get(port, "/blocking", ImmutableMap.of()).status);
+    }
+    finally {
+      BlockingResource.release.countDown();
+      client.shutdownNow();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testAsyncRequestsAreActiveUntilTheyComplete() throws Exception
+  {
+    final RequestLimitFilter filter = new RequestLimitFilter(1, ImmutableSet.of(), 1);
+    final AsyncServlet servlet = new AsyncServlet();
+    final ServletContextHandler root = new ServletContextHandler();
+    final FilterHolder filterHolder = new FilterHolder(filter);
+    filterHolder.setAsyncSupported(true);
+    root.addFilter(filterHolder, "/*", null);
+    final ServletHolder servletHolder = new ServletHolder(servlet);
+    servletHolder.setAsyncSupported(true);
+    root.addServlet(servletHolder, "/*");
+
+    final Server server = new Server();
+    final ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(root);
+    server.start();
+    final ExecutorService client = Executors.newSingleThreadExecutor();
+    try {
+      final int port = connector.getLocalPort();
+      final Future<TestServers.Response> async = client.submit(
+          () -> TestServers.get(port, "/async", ImmutableMap.of())
+      );
+      final AsyncContext asyncContext = servlet.started.poll(10, TimeUnit.SECONDS);
+      Assert.assertNotNull(asyncContext);
+      // The thread handling the request returned, the request is still active.
+      Assert.assertEquals(1, filter.getActiveRequests());
+      Assert.assertEquals(
+          RequestLimitFilter.SC_TOO_MANY_REQUESTS,
+          TestServers.get(port, "/async", ImmutableMap.of()).status
+      );
+
+      asyncContext.getResponse().getWriter().write("completed");
+      asyncContext.complete();
+      final TestServers.Response response = async.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(response.toString(), 200, response.status);
+      Assert.assertEquals("completed", response.body);
+      final long deadline = System.currentTimeMillis() + 10_000;
+      while (filter.getActiveRequests() != 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(0, filter.getActiveRequests());
+      Assert.assertEquals(1, filter.getRejectedRequests());
+    }
+    finally {
+      client.shutdownNow();
+      server.stop();
+    }
+  }
+
+  /**
+   * Puts the requests in async mode, to be completed by the test.
+   */
+  private static class AsyncServlet extends HttpServlet
+  {
+    private final BlockingQueue<AsyncContext> started = new LinkedBlockingQueue<>();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+    {
+      resp.setContentType("text/plain");
+      started.add(req.startAsync());
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.code.guice.jsonconfig.JsonConfigModule;
+import com.google.code.jersey.Jerseys;
+import com.google.common.io.CharStreams;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Starts servers the way applications do, with the {@link JettyServerModule}, and sends requests to them.
+ */
+class TestServers
+{
+  private TestServers()
+  {
+  }
+
+  static int freePort() throws IOException
+  {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * @return an injector of the {@link JettyServerModule} with the given server.http properties and resources
+   */
+  static Injector createInjector(Map<String, String> serverProperties, Class<?>... resources)
+  {
+    final Properties properties = new Properties();
+    for (Map.Entry<String, String> entry : serverProperties.entrySet()) {
+      properties.setProperty("server.http." + entry.getKey(), entry.getValue());
+    }
+    final Module resourceModule = binder -> {
+      binder.bind(Properties.class).toInstance(properties);
+      for (Class<?> resource : resources) {
+        Jerseys.addResource(binder, resource);
+      }
+    };
+    return Guice.createInjector(new JsonConfigModule(), new JettyServerModule(), resourceModule);
+  }
+
+  static Response get(int port, String path, Map<String, String> headers) throws IOException
+  {
+    final HttpURLConnection connection = (HttpURLConnection) new URL("http", "localhost", port, path).openConnection();
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      connection.setRequestProperty(header.getKey(), header.getValue());
+    }
+    final int status = connection.getResponseCode();
+    final InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    if (in == null) {
+      return new Response(status, "", connection);
+    }
+    try (InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return new Response(status, CharStreams.toString(reader), connection);
+    }
+  }
+
+  static class Response
+  {
+    final int status;
+    final String body;
+    private final HttpURLConnection connection;
+
+    Response(int status, String body, HttpURLConnection connection)
+    {
+      this.status = status;
+      this.body = body;
+      this.connection = connection;
+    }
+
+    String getHeader(String name)
+    {
+      return connection.getHeaderField(name);
+    }
+
+    @Override
+    public String toString()
+    {
+      return status + " " + body;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.jersey.jetty;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Injector;
+import com.google.inject.servlet.GuiceFilter;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreadPoolTest
+{
+  @Test
+  public void testGuiceFilterAndJerseyOnThePoolThreads() throws Exception
+  {
+    // Sets up the GuiceFilter, as for the servers of the module.
+    TestServers.createInjector(ImmutableMap.of(), ContextResource.class);
+    final Server server = startServer(guiceContext());
+    try {
+      final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+      for (int i = 0; i < 3; i++) {
+        final TestServers.Response response = TestServers.get(port, "/context", ImmutableMap.of());
+        Assert.assertEquals(response.toString(), 200, response.status);
+        Assert.assertTrue(response.body, response.body.startsWith("[]|true|platform|pool-"));
+      }
+      Assert.assertEquals(200, TestServers.get(port, "/status/health", ImmutableMap.of()).status);
+      Assert.assertEquals(404, TestServers.get(port, "/missing", ImmutableMap.of()).status);
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testConcurrencyLimit() throws Exception
+  {
+    TestServers.createInjector(ImmutableMap.of(), BlockingResource.class);
+    final ConcurrencyLimitHandler limitHandler = new ConcurrencyLimitHandler(1);
+    limitHandler.setHandler(guiceContext());
+    final Server server = startServer(limitHandler);
+    final ExecutorService client = Executors.newSingleThreadExecutor();
+    try {
+      final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+      BlockingResource.entered = new CountDownLatch(1);
+      BlockingResource.release = new CountDownLatch(1);
+      final Future<TestServers.Response> blocked = client.submit(
+          () -> TestServers.get(port, "/blocking", ImmutableMap.of())
+      );
+      Assert.assertTrue(BlockingResource.entered.await(10, TimeUnit.SECONDS));
+      Assert.assertEquals(0, limitHandler.getAvailablePermits());
+      Assert.assertEquals(503, TestServers.get(port, "/blocking", ImmutableMap.of()).status);
+
+      BlockingResource.release.countDown();
+      Assert.assertEquals(200, blocked.get(10, TimeUnit.SECONDS).status);
+      Assert.assertEquals(1, limitHandler.getAvailablePermits());
+      Assert.assertEquals(200, TestServers.get(port, "/blocking", ImmutableMap.of()).status);
+    }
+    finally {
+      BlockingResource.release.countDown();
+      client.shutdownNow();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testEnableVirtualThreads() throws Exception
+  {
+    Assume.assumeTrue("Virtual threads require JDK 21+", VirtualThreads.isSupported());
+    final int port = TestServers.freePort();
+    final Injector injector = TestServers.createInjector(
+        ImmutableMap.of(
+            "port", String.valueOf(port),
+            "enableVirtualThreads", "true",
+            "enableRequestLimit", "true"
+        ),
+        ContextResource.class
+    );
+    final JerseyJettyServer server = injector.getInstance(JerseyJettyServer.class);
+    server.start();
+    try {
+      for (int i = 0; i < 3; i++) {
+        final TestServers.Response response = TestServers.get(port, "/context", ImmutableMap.of());
+        Assert.assertEquals(response.toString(), 200, response.status);
+        Assert.assertTrue(response.body, response.body.startsWith("[]|true|virtual|jetty-"));
+      }
+      Assert.assertEquals(200, TestServers.get(port, "/status/health", ImmutableMap.of()).status);
+      Assert.assertEquals(404, TestServers.get(port, "/missing", ImmutableMap.of()).status);
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * @return the context of the servers of the module, on the GuiceFilter of the last injector created
+   */
+  private static ServletContextHandler guiceContext()
+  {
+    final ServletContextHandler root = new ServletContextHandler(ServletContextHandler.SESSIONS);
+    root.addServlet(new ServletHolder(new DefaultServlet()), "/*");
+    root.addFilter(GuiceFilter.class, "/*", null);
+    return root;
+  }
+
+  /**
+   * @return a started server on a random port, running its tasks on new platform threads named pool-N
+   */
+  private static Server startServer(Handler handler) throws Exception
+  {
+    final AtomicInteger counter = new AtomicInteger();
+    final Server server = new Server(
+        new VirtualThreadPool(
+            task -> {
+              final Thread thread = new Thread(task, "pool-" + counter.getAndIncrement());
+              thread.setDaemon(true);
+              thread.start();
+            }
+        )
+    );
+    final ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(handler);
+    server.start();
+    return server;
+  }
+
+  @Path("/context")
+  public static class ContextResource
+  {
+    @GET
+    public String get(@Context HttpServletRequest request)
+    {
+      // The context path is empty for the root context, and null outside of the context handler.
+      return "[" + request.getContextPath() + "]|"
+             + (request.getServletContext() != null) + "|"
+             + (Thread.currentThread().toString().startsWith("VirtualThread") ? "virtual" : "platform") + "|"
+             + Thread.currentThread().getName();
+    }
+  }
+}
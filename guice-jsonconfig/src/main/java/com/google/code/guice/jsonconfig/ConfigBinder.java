@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.jsonconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Binds config objects of one class from the map of properties built by {@link JsonConfigurator}, without Jackson's
+ * bean introspection.  Implementations are generated by {@link ConfigBinderProcessor}, and looked up with
+ * {@link ConfigBinders#forClass(Class)}.
+ *
+ * @param <T> type of config object to bind.
+ */
+public interface ConfigBinder<T>
+{
+  /**
+   * @return the config bound from the given properties, null if they can't be bound exactly as Jackson would bind them,
+   * in which case the config is converted by the mapper instead
+   */
+  @Nullable
+  T bind(Map<String, Object> jsonMap, ObjectMapper mapper);
+
+  /**
+   * @return true if the config satisfies all its constraints, false if it doesn't or if they couldn't be checked, in
+   * which case the config is validated by the {@code Validator}, which also describes the violations
+   */
+  boolean isValid(T config);
+}
@@ -0,0 +1,515 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.jsonconfig;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@link ConfigBinder} for every config class with {@link JsonProperty} fields that it can bind exactly as
+ * Jackson does.  The generated binder sets the fields directly and checks the {@code NotNull}, {@code Min} and
+ * {@code Max} constraints of the fields, and is used by {@link JsonConfigurator} instead of converting the properties
+ * with the mapper and validating the config with the {@code Validator}.  Properties the binder can't convert, and
+ * configs violating their constraints, are still handled by the mapper and the {@code Validator}, so that errors are
+ * reported the same way.
+ *
+ * Binders are only generated for plain classes: extending {@code Object}, with a no-arg constructor, non-final
+ * {@link JsonProperty} fields whose names have no dots, and no other Jackson annotation.  Private fields are set and
+ * read through the method handles of {@link ConfigBinders#setter(Class, String)} and
+ * {@link ConfigBinders#getter(Class, String)}, resolved once per binder.  Fields of types other than strings, ints,
+ * longs and booleans are still converted by the mapper, one by one.  Binders assume the mapper binds these classes the
+ * default way: mix-ins or custom deserializers registered with the mapper are not seen.
+ *
+ * The binder of {@code com.example.Outer$Inner} is {@code com.example.Outer$Inner$$ConfigBinder}.  The processor is
+ * registered as a service, so it runs whenever guice-jsonconfig is on the compile classpath.
+ */
+public class ConfigBinderProcessor extends AbstractProcessor
+{
+  private static final String JACKSON_PACKAGE = "com.fasterxml.jackson.";
+  private static final String CONSTRAINT = "javax.validation.Constraint";
+  private static final String VALIDATION_PACKAGE = "javax.validation.";
+  private static final String HIBERNATE_VALIDATOR_PACKAGE = "org.hibernate.validator.";
+  private static final String NOT_NULL = "javax.validation.constraints.NotNull";
+  private static final String MIN = "javax.validation.constraints.Min";
+  private static final String MAX = "javax.validation.constraints.Max";
+
+  /** The conversions of {@link ConfigBinders} by the type they convert to. */
+  private static final Map<String, String> CONVERSIONS = ImmutableMap.<String, String>builder()
+      .put("java.lang.String", "toStringValue")
+      .put("int", "toInteger")
+      .put("java.lang.Integer", "toInteger")
+      .put("long", "toLong")
+      .put("java.lang.Long", "toLong")
+      .put("boolean", "toBoolean")
+      .put("java.lang.Boolean", "toBoolean")
+      .build();
+  /** The types {@code Min} and {@code Max} are checked on, other types are left to the {@code Validator}. */
+  private static final Set<String> INTEGRAL_TYPES = ImmutableSet.of(
+      "byte",
+      "short",
+      "int",
+      "long",
+      "java.lang.Byte",
+      "java.lang.Short",
+      "java.lang.Integer",
+      "java.lang.Long"
+  );
+
+  private final Set<String> generated = new HashSet<>();
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes()
+  {
+    return ImmutableSet.of(JsonProperty.class.getName());
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion()
+  {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+  {
+    final Set<TypeElement> types = new HashSet<>();
+    for (Element element : roundEnv.getElementsAnnotatedWith(JsonProperty.class)) {
+      Element enclosing = element.getEnclosingElement();
+      if (element.getKind() == ElementKind.PARAMETER) {
+        enclosing = enclosing.getEnclosingElement();
+      }
+      if (enclosing instanceof TypeElement) {
+        types.add((TypeElement) enclosing);
+      }
+    }
+
+    for (TypeElement type : types) {
+      final List<VariableElement> fields = bindableFields(type);
+      if (fields != null && generated.add(type.getQualifiedName().toString())) {
+        try {
+          generate(type, fields);
+        }
+        catch (IOException e) {
+          processingEnv.getMessager().printMessage(
+              Diagnostic.Kind.ERROR,
+              "Unable to generate config binder: " + e.getMessage(),
+              type
+          );
+        }
+      }
+    }
+    // Don't claim the annotation, Jackson annotations are meant for many other processors as well.
+    return false;
+  }
+
+  /**
+   * @return the {@link JsonProperty} fields of the class, null if no binder can be generated for it
+   */
+  private List<VariableElement> bindableFields(TypeElement type)
+  {
+    if (type.getKind() != ElementKind.CLASS
+        || type.getModifiers().contains(Modifier.ABSTRACT)
+        || !type.getTypeParameters().isEmpty()
+        || !isObject(type.getSuperclass())
+        || hasJacksonAnnotation(type)) {
+      return null;
+    }
+    for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+      final TypeElement enclosing = (TypeElement) e;
+      if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+        return null;
+      }
+      if (enclosing.getNestingKind() == NestingKind.MEMBER && !enclosing.getModifiers().contains(Modifier.STATIC)) {
+        return null;
+      }
+      if (enclosing.getNestingKind() != NestingKind.TOP_LEVEL && enclosing.getNestingKind() != NestingKind.MEMBER) {
+        return null;
+      }
+    }
+
+    boolean hasNoArgConstructor = false;
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (hasJacksonAnnotation(constructor)) {
+        return null;
+      }
+      for (VariableElement parameter : constructor.getParameters()) {
+        if (hasJacksonAnnotation(parameter)) {
+          return null;
+        }
+      }
+      if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+        hasNoArgConstructor = true;
+      }
+    }
+    if (!hasNoArgConstructor) {
+      return null;
+    }
+
+    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      // Jackson prefers setters to fields.
+      final boolean isSetter = method.getSimpleName().toString().startsWith("set") && method.getParameters().size() == 1;
+      if (hasJacksonAnnotation(method) || (isSetter && !method.getModifiers().contains(Modifier.STATIC))) {
+        return null;
+      }
+    }
+
+    final List<VariableElement> fields = new ArrayList<>();
+    final Set<String> names = new HashSet<>();
+    for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      final AnnotationMirror jsonProperty = findAnnotation(field, JsonProperty.class.getName());
+      if (jsonProperty == null) {
+        if (hasJacksonAnnotation(field)) {
+          return null;
+        }
+        continue;
+      }
+      if (field.getModifiers().contains(Modifier.FINAL)
+          || field.getModifiers().contains(Modifier.STATIC)) {
+        return null;
+      }
+      for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+        if (annotation != jsonProperty && annotationName(annotation).startsWith(JACKSON_PACKAGE)) {
+          return null;
+        }
+      }
+      // Only the name may be given, access, defaults and the like are left to Jackson.
+      for (ExecutableElement attribute : jsonProperty.getElementValues().keySet()) {
+        if (!attribute.getSimpleName().contentEquals("value")) {
+          return null;
+        }
+      }
+      final String name = propertyName(field);
+      if (name.contains(".") || !names.add(name)) {
+        return null;
+      }
+      fields.add(field);
+    }
+    return fields.isEmpty() ? null : fields;
+  }
+
+  private void generate(TypeElement type, List<VariableElement> fields) throws IOException
+  {
+    final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+    final String packageName = pkg.getQualifiedName().toString();
+    final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    final String binderName = (pkg.isUnnamed() ? binaryName : binaryName.substring(packageName.length() + 1))
+                              + ConfigBinders.BINDER_SUFFIX;
+    final String typeName = type.getQualifiedName().toString();
+    final String binders = ConfigBinders.class.getCanonicalName();
+    final String typeReference = "com.fasterxml.jackson.core.type.TypeReference";
+    final String methodHandle = "java.lang.invoke.MethodHandle";
+    final Set<Integer> getters = new HashSet<>();
+    final List<String> checks = constraintChecks(type, fields, getters);
+    boolean hasPrivateFields = false;
+
+    try (PrintWriter out = new PrintWriter(
+        processingEnv.getFiler()
+                     .createSourceFile(pkg.isUnnamed() ? binderName : packageName + "." + binderName, type)
+                     .openWriter()
+    )) {
+      if (!pkg.isUnnamed()) {
+        out.println("package " + packageName + ";");
+        out.println();
+      }
+      out.println("/**");
+      out.println(" * Config binder of {@link " + typeName + "}, generated by " + getClass().getName() + ".");
+      out.println(" */");
+      out.println("public final class " + binderName);
+      out.println("    implements " + ConfigBinder.class.getCanonicalName() + "<" + typeName + ">");
+      out.println("{");
+      for (int i = 0; i < fields.size(); i++) {
+        final VariableElement field = fields.get(i);
+        final TypeMirror fieldType = field.asType();
+        if (!CONVERSIONS.containsKey(fieldType.toString()) && isGeneric(fieldType)) {
+          out.println("  private static final " + typeReference + "<" + fieldType + "> TYPE_" + i + " =");
+          out.println("      new " + typeReference + "<" + fieldType + ">() {};");
+        }
+        if (isPrivate(field)) {
+          hasPrivateFields = true;
+          out.println("  private static final " + methodHandle + " SETTER_" + i + " =");
+          out.println("      " + binders + ".setter(" + typeName + ".class, \"" + field.getSimpleName() + "\");");
+        }
+        if (getters.contains(i)) {
+          out.println("  private static final " + methodHandle + " GETTER_" + i + " =");
+          out.println("      " + binders + ".getter(" + typeName + ".class, \"" + field.getSimpleName() + "\");");
+        }
+      }
+      out.println();
+      out.println("  @Override");
+      out.println("  public " + typeName + " bind(");
+      out.println("      java.util.Map<java.lang.String, java.lang.Object> jsonMap,");
+      out.println("      com.fasterxml.jackson.databind.ObjectMapper mapper");
+      out.println("  )");
+      out.println("  {");
+      out.println("    final " + typeName + " config = new " + typeName + "();");
+      // Setting fields through method handles throws nothing checked, but the compiler can't tell.
+      final String indent = hasPrivateFields ? "  " : "";
+      if (hasPrivateFields) {
+        out.println("    try {");
+      }
+      out.println(indent + "    for (java.util.Map.Entry<java.lang.String, java.lang.Object> entry : jsonMap.entrySet()) {");
+      out.println(indent + "      switch (entry.getKey()) {");
+      for (int i = 0; i < fields.size(); i++) {
+        final VariableElement field = fields.get(i);
+        final TypeMirror fieldType = field.asType();
+        final String conversion = CONVERSIONS.get(fieldType.toString());
+        out.println(indent + "        case \"" + escape(propertyName(field)) + "\": {");
+        if (conversion != null) {
+          final String boxed = fieldType.getKind().isPrimitive()
+                               ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) fieldType)
+                                              .getQualifiedName()
+                                              .toString()
+                               : fieldType.toString();
+          out.println(indent + "          final " + boxed + " value = " + binders + "." + conversion + "(entry.getValue());");
+          out.println(indent + "          if (value == null) {");
+          out.println(indent + "            return null;");
+          out.println(indent + "          }");
+        } else {
+          final String target = isGeneric(fieldType)
+                                ? "TYPE_" + i
+                                : processingEnv.getTypeUtils().erasure(fieldType) + ".class";
+          out.println(indent + "          final " + fieldType + " value;");
+          out.println(indent + "          try {");
+          out.println(indent + "            value = mapper.convertValue(entry.getValue(), " + target + ");");
+          out.println(indent + "          }");
+          out.println(indent + "          catch (RuntimeException e) {");
+          out.println(indent + "            return null;");
+          out.println(indent + "          }");
+        }
+        if (!isPrivate(field)) {
+          out.println(indent + "          config." + field.getSimpleName() + " = value;");
+        } else if (conversion != null && fieldType.getKind().isPrimitive()) {
+          // invokeExact needs the exact type of the field.
+          out.println(indent + "          SETTER_" + i + ".invokeExact(config, (" + fieldType + ") value);");
+        } else {
+          out.println(indent + "          SETTER_" + i + ".invokeExact(config, value);");
+        }
+        out.println(indent + "          break;");
+        out.println(indent + "        }");
+      }
+      out.println(indent + "        default:");
+      out.println(indent + "          return null;");
+      out.println(indent + "      }");
+      out.println(indent + "    }");
+      if (hasPrivateFields) {
+        out.println("    }");
+        out.println("    catch (Throwable t) {");
+        out.println("      throw " + binders + ".propagate(t);");
+        out.println("    }");
+      }
+      out.println("    return config;");
+      out.println("  }");
+      out.println();
+      out.println("  @Override");
+      out.println("  public boolean isValid(" + typeName + " config)");
+      out.println("  {");
+      if (checks == null) {
+        out.println("    // Some constraints can only be checked by the Validator.");
+        out.println("    return false;");
+      } else if (checks.isEmpty()) {
+        out.println("    return true;");
+      } else if (getters.isEmpty()) {
+        out.println("    return " + String.join("\n           && ", checks) + ";");
+      } else {
+        out.println("    try {");
+        out.println("      return " + String.join("\n             && ", checks) + ";");
+        out.println("    }");
+        out.println("    catch (Throwable t) {");
+        out.println("      throw " + binders + ".propagate(t);");
+        out.println("    }");
+      }
+      out.println("  }");
+      out.println("}");
+    }
+  }
+
+  /**
+   * @param getters receives the indexes of the private fields the checks read through a getter
+   *
+   * @return the checks of the constraints of the config, null if some can't be checked
+   */
+  private List<String> constraintChecks(TypeElement type, List<VariableElement> fields, Set<Integer> getters)
+  {
+    if (hasConstraint(type)) {
+      return null;
+    }
+    for (Element member : type.getEnclosedElements()) {
+      if (member.getKind() != ElementKind.FIELD && hasConstraint(member)) {
+        return null;
+      }
+    }
+    for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      if (!fields.contains(field) && hasConstraint(field)) {
+        return null;
+      }
+    }
+
+    final List<String> checks = new ArrayList<>();
+    final Set<Integer> fieldGetters = new HashSet<>();
+    for (int i = 0; i < fields.size(); i++) {
+      final VariableElement field = fields.get(i);
+      final String fieldType = field.asType().toString();
+      final boolean isPrimitive = field.asType().getKind().isPrimitive();
+      final String ref;
+      if (isPrivate(field)) {
+        ref = "((" + processingEnv.getTypeUtils().erasure(field.asType()) + ") GETTER_" + i + ".invokeExact(config))";
+      } else {
+        ref = "config." + field.getSimpleName();
+      }
+      final int checkCount = checks.size();
+      for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+        final String name = annotationName(annotation);
+        if (!isConstraint(annotation)) {
+          continue;
+        }
+        // Constraints of other groups are not checked by JsonConfigurator.
+        Object value = null;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> attribute
+            : annotation.getElementValues().entrySet()) {
+          final String attributeName = attribute.getKey().getSimpleName().toString();
+          if (attributeName.equals("groups")) {
+            return null;
+          }
+          if (attributeName.equals("value")) {
+            value = attribute.getValue().getValue();
+          }
+        }
+        if (name.equals(NOT_NULL)) {
+          if (!isPrimitive) {
+            checks.add(ref + " != null");
+          }
+        } else if ((name.equals(MIN) || name.equals(MAX)) && INTEGRAL_TYPES.contains(fieldType) && value != null) {
+          final String check = ref + (name.equals(MIN) ? " >= " : " <= ") + value + "L";
+          checks.add(isPrimitive ? check : "(" + ref + " == null || " + check + ")");
+        } else {
+          return null;
+        }
+      }
+      if (isPrivate(field) && checks.size() > checkCount) {
+        fieldGetters.add(i);
+      }
+    }
+    getters.addAll(fieldGetters);
+    return checks;
+  }
+
+  private static boolean isPrivate(Element element)
+  {
+    return element.getModifiers().contains(Modifier.PRIVATE);
+  }
+
+  private static boolean hasConstraint(Element element)
+  {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      if (isConstraint(annotation)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Annotations of the validation packages, such as {@code @Valid} or the {@code List} of constraints, count as
+   * constraints as well.
+   */
+  private static boolean isConstraint(AnnotationMirror annotation)
+  {
+    final String name = annotationName(annotation);
+    return name.startsWith(VALIDATION_PACKAGE)
+           || name.startsWith(HIBERNATE_VALIDATOR_PACKAGE)
+           || findAnnotation(annotation.getAnnotationType().asElement(), CONSTRAINT) != null;
+  }
+
+  private static boolean hasJacksonAnnotation(Element element)
+  {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      if (annotationName(annotation).startsWith(JACKSON_PACKAGE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static AnnotationMirror findAnnotation(Element element, String annotationName)
+  {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      if (annotationName(annotation).equals(annotationName)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static String annotationName(AnnotationMirror annotation)
+  {
+    return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+  }
+
+  private static String propertyName(VariableElement field)
+  {
+    final JsonProperty jsonProperty = field.getAnnotation(JsonProperty.class);
+    return jsonProperty.value().isEmpty() ? field.getSimpleName().toString() : jsonProperty.value();
+  }
+
+  private static boolean isObject(TypeMirror type)
+  {
+    return type.getKind() == TypeKind.DECLARED
+           && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals("java.lang.Object");
+  }
+
+  private static boolean isGeneric(TypeMirror type)
+  {
+    return type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty();
+  }
+
+  private static String escape(String s)
+  {
+    return s.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.jsonconfig;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Looks up the {@link ConfigBinder} generated for config classes, and holds the conversions and field accessors used by
+ * generated binders.  Conversions return null for the values they can't convert exactly as Jackson would, so that the
+ * binder gives up.
+ */
+@Slf4j
+public final class ConfigBinders
+{
+  static final String BINDER_SUFFIX = "$$ConfigBinder";
+
+  // Longer values may overflow, Jackson reports those.
+  private static final Pattern INT = Pattern.compile("-?[0-9]{1,9}");
+  private static final Pattern LONG = Pattern.compile("-?[0-9]{1,18}");
+
+  private static final ClassValue<Optional<ConfigBinder<?>>> BINDERS = new ClassValue<Optional<ConfigBinder<?>>>()
+  {
+    @Override
+    protected Optional<ConfigBinder<?>> computeValue(Class<?> type)
+    {
+      final Class<?> binderClass;
+      try {
+        binderClass = Class.forName(type.getName() + BINDER_SUFFIX, true, type.getClassLoader());
+      }
+      catch (ExceptionInInitializerError e) {
+        // The accessors of the private fields couldn't be resolved.
+        log.warn("Ignoring generated config binder of [{}]", type, e);
+        return Optional.empty();
+      }
+      catch (ClassNotFoundException | LinkageError e) {
+        return Optional.empty();
+      }
+      try {
+        return Optional.of((ConfigBinder<?>) binderClass.getConstructor().newInstance());
+      }
+      catch (ReflectiveOperationException | ClassCastException e) {
+        log.warn("Ignoring generated config binder [{}]", binderClass, e);
+        return Optional.empty();
+      }
+    }
+  };
+
+  private ConfigBinders()
+  {
+  }
+
+  /**
+   * @return the binder generated for exactly the given class, null if there is none
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public static <T> ConfigBinder<T> forClass(Class<T> clazz)
+  {
+    return (ConfigBinder<T>) BINDERS.get(clazz).orElse(null);
+  }
+
+  /**
+   * @return a handle setting the given private field of the config class, which binders resolve once
+   */
+  public static MethodHandle setter(Class<?> clazz, String fieldName)
+  {
+    try {
+      return MethodHandles.lookup().unreflectSetter(accessibleField(clazz, fieldName));
+    }
+    catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return a handle reading the given private field of the config class, which binders resolve once
+   */
+  public static MethodHandle getter(Class<?> clazz, String fieldName)
+  {
+    try {
+      return MethodHandles.lookup().unreflectGetter(accessibleField(clazz, fieldName));
+    }
+    catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Field accessibleField(Class<?> clazz, String fieldName)
+  {
+    try {
+      final Field field = clazz.getDeclaredField(fieldName);
+      field.setAccessible(true);
+      return field;
+    }
+    catch (NoSuchFieldException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Rethrows what the field handles threw, which can only be unchecked.
+   */
+  public static RuntimeException propagate(Throwable t)
+  {
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new UndeclaredThrowableException(t);
+  }
+
+  @Nullable
+  public static String toStringValue(Object value)
+  {
+    return value instanceof String ? (String) value : null;
+  }
+
+  @Nullable
+  public static Integer toInteger(Object value)
+  {
+    return value instanceof String && INT.matcher((String) value).matches() ? Integer.valueOf((String) value) : null;
+  }
+
+  @Nullable
+  public static Long toLong(Object value)
+  {
+    return value instanceof String && LONG.matcher((String) value).matches() ? Long.valueOf((String) value) : null;
+  }
+
+  @Nullable
+  public static Boolean toBoolean(Object value)
+  {
+    if ("true".equals(value)) {
+      return Boolean.TRUE;
+    }
+    if ("false".equals(value)) {
+      return Boolean.FALSE;
+    }
+    return null;
+  }
+}
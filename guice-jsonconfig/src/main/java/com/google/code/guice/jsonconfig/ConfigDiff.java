@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.jsonconfig;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+
+/**
+ * The change of a reloadable config, see {@link ConfigReloader}.
+ *
+ * @param <T> type of config object.
+ */
+@Getter
+@ToString(exclude = {"oldConfig", "newConfig"})
+public class ConfigDiff<T>
+{
+  private final String propertyBase;
+  private final Class<T> configClass;
+  private final T oldConfig;
+  private final T newConfig;
+  /** The JSON properties of the config whose properties changed, the first path element after the property base. */
+  private final Set<String> changedFields;
+
+  public ConfigDiff(String propertyBase, Class<T> configClass, T oldConfig, T newConfig, Set<String> changedFields)
+  {
+    this.propertyBase = propertyBase;
+    this.configClass = configClass;
+    this.oldConfig = oldConfig;
+    this.newConfig = newConfig;
+    this.changedFields = changedFields;
+  }
+}
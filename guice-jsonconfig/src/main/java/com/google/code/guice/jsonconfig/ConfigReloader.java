@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.jsonconfig;
+
+import com.google.code.guice.common.PropertiesWatcher;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Reloads every {@link ReloadableSupplier} when the properties change.  The {@link PropertiesWatcher} bound by
+ * {@code PropertiesModule}, if any, is started once the first reloadable config is created, so nothing is watched
+ * unless reloadable configs are used.
+ *
+ * Only the configs materialized from properties which changed are materialized again.  When the changed properties
+ * are known, {@link #apply(Map)} finds the affected configs from the prefixes of the changed names, and applies the
+ * changes to the properties each of them was materialized from, without looking at the other configs or properties.
+ * The changes are only merged in the index of all the properties when a reloadable config is created.
+ */
+@Slf4j
+@Singleton
+public class ConfigReloader
+{
+  /** Guarded by this, like all the other fields. */
+  private final List<ReloadableSupplier<?>> suppliers = new ArrayList<>();
+  /** The suppliers keyed by the prefix of the properties they are materialized from. */
+  private final Map<String, List<ReloadableSupplier<?>>> suppliersByPrefix = new HashMap<>();
+  private PropertiesWatcher watcher = null;
+  private boolean watching = false;
+  /** The latest properties but {@link #pending}, null until the first reloadable config is created. */
+  private PropertiesIndex current = null;
+  /** The changes applied since {@link #current}, a null value removes the property. */
+  private final Map<String, String> pending = new HashMap<>();
+
+  @Inject
+  public ConfigReloader()
+  {
+  }
+
+  @Inject(optional = true)
+  public synchronized void setWatcher(PropertiesWatcher watcher)
+  {
+    this.watcher = watcher;
+  }
+
+  /**
+   * Creates a reloadable config from the latest properties, which are the given ones unless they have been reloaded.
+   */
+  synchronized <T> ReloadableSupplier<T> create(
+      String propertyBase,
+      Class<T> classToProvide,
+      @Nullable Class<? extends T> defaultClass,
+      JsonConfigurator configurator,
+      PropertiesIndex props
+  )
+  {
+    if (current == null) {
+      current = props;
+    } else if (!pending.isEmpty()) {
+      current = current.withChanges(pending);
+      pending.clear();
+    }
+    final ReloadableSupplier<T> supplier = new ReloadableSupplier<>(
+        propertyBase,
+        classToProvide,
+        defaultClass,
+        configurator,
+        current
+    );
+    suppliers.add(supplier);
+    suppliersByPrefix.computeIfAbsent(supplier.getPrefix(), k -> new ArrayList<>()).add(supplier);
+    if (watcher != null && !watching) {
+      watching = true;
+      watcher.addListener(this::reload);
+      try {
+        watcher.start();
+      }
+      catch (IOException e) {
+        log.error("Unable to watch properties files {}, configs won't be reloaded", watcher.getFiles(), e);
+      }
+    }
+    return supplier;
+  }
+
+  /**
+   * Materializes again the reloadable configs whose properties differ in the given ones.
+   *
+   * @return the changes of the configs which were replaced
+   */
+  public synchronized List<ConfigDiff<?>> reload(Properties props)
+  {
+    current = new PropertiesIndex(props);
+    pending.clear();
+    final List<ConfigDiff<?>> diffs = new ArrayList<>();
+    for (ReloadableSupplier<?> supplier : suppliers) {
+      addDiff(diffs, supplier.reload(current));
+    }
+    return logged(diffs);
+  }
+
+  /**
+   * Applies changes to the latest properties, and materializes again the reloadable configs using one of the changed
+   * properties.
+   *
+   * @param changes The changed properties, a null value removes the property
+   *
+   * @return the changes of the configs which were replaced
+   */
+  public synchronized List<ConfigDiff<?>> apply(Map<String, String> changes)
+  {
+    if (current == null) {
+      return Collections.emptyList();
+    }
+    pending.putAll(changes);
+    // The changes under each prefix used by a config.
+    final Map<String, Map<String, String>> changesByPrefix = new HashMap<>();
+    for (Map.Entry<String, String> change : changes.entrySet()) {
+      final String property = change.getKey();
+      // A config uses a property if its prefix is the property name up to one of its dots.
+      for (int i = property.indexOf('.'); i >= 0; i = property.indexOf('.', i + 1)) {
+        final String prefix = property.substring(0, i + 1);
+        if (suppliersByPrefix.containsKey(prefix)) {
+          changesByPrefix.computeIfAbsent(prefix, k -> new HashMap<>()).put(property, change.getValue());
+        }
+      }
+    }
+    final List<ConfigDiff<?>> diffs = new ArrayList<>();
+    for (Map.Entry<String, Map<String, String>> prefixChanges : changesByPrefix.entrySet()) {
+      for (ReloadableSupplier<?> supplier : suppliersByPrefix.get(prefixChanges.getKey())) {
+        addDiff(diffs, supplier.apply(prefixChanges.getValue()));
+      }
+    }
+    return logged(diffs);
+  }
+
+  private static void addDiff(List<ConfigDiff<?>> diffs, @Nullable ConfigDiff<?> diff)
+  {
+    if (diff != null) {
+      diffs.add(diff);
+    }
+  }
+
+  private List<ConfigDiff<?>> logged(List<ConfigDiff<?>> diffs)
+  {
+    log.info("Reloaded [{}] of [{}] reloadable configs: {}", diffs.size(), suppliers.size(), diffs);
+    return diffs;
+  }
+}
@@ -0,0 +1,432 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.jsonconfig;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.cfg.DeserializerFactoryConfig;
+import com.fasterxml.jackson.databind.cfg.SerializerFactoryConfig;
+import com.fasterxml.jackson.databind.deser.BasicDeserializerFactory;
+import com.fasterxml.jackson.databind.deser.DeserializerFactory;
+import com.fasterxml.jackson.databind.ser.BasicSerializerFactory;
+import com.fasterxml.jackson.databind.ser.SerializerFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A directory of Smile-encoded config objects, which lets {@link JsonConfigurator} skip parsing, conversion and
+ * validation on a restart with the same properties.  Bind one to enable it:
+ *
+ * <pre>
+ * binder.bind(ConfigSnapshotCache.class).toInstance(new ConfigSnapshotCache(new File("var/config-snapshots")));
+ * </pre>
+ *
+ * A snapshot is keyed by a hash of the properties under its prefix, of the configuration of the ObjectMapper and of
+ * the bytecode of the config class, its superclasses, the classes of their fields and their mix-ins, so it is not used
+ * once any of them changed.  A config is only written if reading it back gives the same fields, configs that don't
+ * survive the round trip through their serialized form are materialized on every boot.  Only the latest snapshot of
+ * every prefix and class is kept.
+ */
+@Slf4j
+public class ConfigSnapshotCache
+{
+  private static final String SUFFIX = ".smile";
+
+  /** The classes a config class is built from, and the hash of their bytecode. */
+  private static final ClassValue<Schema> SCHEMAS = new ClassValue<Schema>()
+  {
+    @Override
+    protected Schema computeValue(Class<?> type)
+    {
+      final SortedMap<String, Class<?>> classes = new TreeMap<>();
+      collectClasses(type, classes);
+      final Hasher hasher = Hashing.sha256().newHasher();
+      for (Class<?> clazz : classes.values()) {
+        final String resource = clazz.getName().replace('.', '/') + ".class";
+        try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+          if (in == null) {
+            return new Schema(classes.values(), null);
+          }
+          hasher.putString(clazz.getName(), StandardCharsets.UTF_8).putBytes(ByteStreams.toByteArray(in));
+        }
+        catch (IOException e) {
+          return new Schema(classes.values(), null);
+        }
+      }
+      return new Schema(classes.values(), hasher.hash().toString());
+    }
+  };
+
+  private final File directory;
+  private final SmileFactory smileFactory = new SmileFactory();
+
+  public ConfigSnapshotCache(File directory)
+  {
+    this.directory = directory;
+  }
+
+  /**
+   * @return the key of the config of the given class materialized from the given properties, null if it can't be
+   * cached
+   */
+  @Nullable
+  SnapshotKey key(String propertyBase, Class<?> clazz, SortedMap<String, String> props, ObjectMapper mapper)
+  {
+    final String schema = SCHEMAS.get(clazz).hash;
+    final String mapperFingerprint = mapperFingerprint(mapper, clazz);
+    if (schema == null || mapperFingerprint == null) {
+      return null;
+    }
+    final String name = Hashing.sha256()
+                               .newHasher()
+                               .putString(propertyBase, StandardCharsets.UTF_8)
+                               .putByte((byte) 0)
+                               .putString(clazz.getName(), StandardCharsets.UTF_8)
+                               .hash()
+                               .toString();
+    final Hasher inputs = Hashing.sha256()
+                                 .newHasher()
+                                 .putString(schema, StandardCharsets.UTF_8)
+                                 .putByte((byte) 0)
+                                 .putString(mapperFingerprint, StandardCharsets.UTF_8);
+    for (Map.Entry<String, String> property : props.entrySet()) {
+      inputs.putByte((byte) 0)
+            .putString(property.getKey(), StandardCharsets.UTF_8)
+            .putByte((byte) 0)
+            .putString(property.getValue(), StandardCharsets.UTF_8);
+    }
+    return new SnapshotKey(name, inputs.hash().toString());
+  }
+
+  /**
+   * @return the snapshot with the given key, null if there is none or it can't be read
+   */
+  @Nullable
+  <T> T load(SnapshotKey key, ObjectReader reader)
+  {
+    final File file = key.file(directory);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (JsonParser parser = smileFactory.createParser(file)) {
+      return reader.readValue(parser);
+    }
+    catch (IOException | RuntimeException e) {
+      log.warn("Unable to read config snapshot[{}], deleting it: {}", file, e.getMessage());
+      if (!file.delete()) {
+        log.warn("Unable to delete config snapshot[{}]", file);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Writes the snapshot with the given key, replacing the previous snapshot of the same prefix and class, if reading it
+   * back with the given reader gives the same fields as the config.  Failures are only logged, the config is
+   * materialized from the properties on the next boot.
+   */
+  <T> void store(SnapshotKey key, ObjectWriter writer, ObjectReader reader, T config)
+  {
+    final File file = key.file(directory);
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (JsonGenerator generator = smileFactory.createGenerator(out, JsonEncoding.UTF8)) {
+        writer.writeValue(generator, config);
+      }
+      final byte[] bytes = out.toByteArray();
+      final Object copy;
+      try (JsonParser parser = smileFactory.createParser(bytes)) {
+        copy = reader.readValue(parser);
+      }
+      if (!sameFields(config, copy)) {
+        log.info("Not writing config snapshot[{}], class[{}] doesn't read back as written", file, config.getClass());
+        return;
+      }
+
+      Files.createDirectories(directory.toPath());
+      final File tmp = File.createTempFile(key.name, ".tmp", directory);
+      try {
+        Files.write(tmp.toPath(), bytes);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      finally {
+        Files.deleteIfExists(tmp.toPath());
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      log.warn("Unable to write config snapshot[{}]: {}", file, e.getMessage());
+      return;
+    }
+
+    final File[] previous = directory.listFiles(
+        (dir, fileName) -> fileName.startsWith(key.name + "-")
+                           && fileName.endsWith(SUFFIX)
+                           && !fileName.equals(file.getName())
+    );
+    if (previous != null) {
+      for (File stale : previous) {
+        if (!stale.delete()) {
+          log.warn("Unable to delete stale config snapshot[{}]", stale);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return a hash of the configuration of the mapper that can change how the given class is written or read, null if
+   * it can't be described
+   */
+  @Nullable
+  private static String mapperFingerprint(ObjectMapper mapper, Class<?> clazz)
+  {
+    final SerializationConfig serializationConfig = mapper.getSerializationConfig();
+    final DeserializationConfig deserializationConfig = mapper.getDeserializationConfig();
+    final SerializerFactory serializerFactory = mapper.getSerializerFactory();
+    final DeserializerFactory deserializerFactory = mapper.getDeserializationContext().getFactory();
+    if (!(serializerFactory instanceof BasicSerializerFactory)
+        || !(deserializerFactory instanceof BasicDeserializerFactory)) {
+      return null;
+    }
+
+    final Hasher hasher = Hashing.sha256().newHasher();
+    putClass(hasher, mapper);
+    hasher.putInt(serializationConfig.getSerializationFeatures())
+          .putInt(deserializationConfig.getDeserializationFeatures());
+    for (MapperFeature feature : MapperFeature.values()) {
+      hasher.putBoolean(mapper.isEnabled(feature));
+    }
+    putClass(hasher, mapper.getPropertyNamingStrategy());
+    putClass(hasher, mapper.getInjectableValues());
+    putClass(hasher, serializationConfig.getDateFormat());
+    hasher.putString(serializationConfig.getTimeZone().getID(), StandardCharsets.UTF_8);
+    for (AnnotationIntrospector introspector : serializationConfig.getAnnotationIntrospector().allIntrospectors()) {
+      putClass(hasher, introspector);
+    }
+    for (AnnotationIntrospector introspector : deserializationConfig.getAnnotationIntrospector().allIntrospectors()) {
+      putClass(hasher, introspector);
+    }
+
+    // The handlers registered by modules.
+    final SerializerFactoryConfig serializers = ((BasicSerializerFactory) serializerFactory).getFactoryConfig();
+    putClasses(hasher, serializers.serializers());
+    putClasses(hasher, serializers.keySerializers());
+    putClasses(hasher, serializers.serializerModifiers());
+    final DeserializerFactoryConfig deserializers =
+        ((BasicDeserializerFactory) deserializerFactory).getFactoryConfig();
+    putClasses(hasher, deserializers.deserializers());
+    putClasses(hasher, deserializers.keyDeserializers());
+    putClasses(hasher, deserializers.deserializerModifiers());
+    putClasses(hasher, deserializers.abstractTypeResolvers());
+    putClasses(hasher, deserializers.valueInstantiators());
+
+    for (Class<?> schemaClass : SCHEMAS.get(clazz).classes) {
+      final Class<?> mixIn = mapper.findMixInClassFor(schemaClass);
+      if (mixIn != null) {
+        final String mixInSchema = SCHEMAS.get(mixIn).hash;
+        if (mixInSchema == null) {
+          return null;
+        }
+        hasher.putString(schemaClass.getName(), StandardCharsets.UTF_8)
+              .putByte((byte) 0)
+              .putString(mixInSchema, StandardCharsets.UTF_8);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putClasses(Hasher hasher, Iterable<?> objects)
+  {
+    for (Object object : objects) {
+      putClass(hasher, object);
+    }
+    hasher.putByte((byte) 0);
+  }
+
+  private static void putClass(Hasher hasher, @Nullable Object object)
+  {
+    hasher.putString(object == null ? "" : object.getClass().getName(), StandardCharsets.UTF_8).putByte((byte) 0);
+  }
+
+  /**
+   * @return whether the given objects are equal, comparing the fields of application classes one by one, because
+   * config classes rarely implement equals
+   */
+  private static boolean sameFields(@Nullable Object expected, @Nullable Object actual)
+  {
+    if (expected == actual) {
+      return true;
+    }
+    if (expected == null || actual == null || expected.getClass() != actual.getClass()) {
+      return false;
+    }
+    if (expected instanceof List) {
+      final List<?> expectedList = (List<?>) expected;
+      final List<?> actualList = (List<?>) actual;
+      if (expectedList.size() != actualList.size()) {
+        return false;
+      }
+      for (int i = 0; i < expectedList.size(); i++) {
+        if (!sameFields(expectedList.get(i), actualList.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (expected instanceof Map) {
+      final Map<?, ?> expectedMap = (Map<?, ?>) expected;
+      final Map<?, ?> actualMap = (Map<?, ?>) actual;
+      if (!expectedMap.keySet().equals(actualMap.keySet())) {
+        return false;
+      }
+      for (Map.Entry<?, ?> entry : expectedMap.entrySet()) {
+        if (!sameFields(entry.getValue(), actualMap.get(entry.getKey()))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    final Class<?> clazz = expected.getClass();
+    if (clazz.isArray()) {
+      if (Array.getLength(expected) != Array.getLength(actual)) {
+        return false;
+      }
+      for (int i = 0; i < Array.getLength(expected); i++) {
+        if (!sameFields(Array.get(expected, i), Array.get(actual, i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (clazz.getClassLoader() == null || clazz.isEnum() || expected instanceof Collection) {
+      return expected.equals(actual);
+    }
+
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        final int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+          if (!sameFields(field.get(expected), field.get(actual))) {
+            return false;
+          }
+        }
+        catch (IllegalAccessException | RuntimeException e) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void collectClasses(Type type, SortedMap<String, Class<?>> classes)
+  {
+    if (type instanceof ParameterizedType) {
+      collectClasses(((ParameterizedType) type).getRawType(), classes);
+      for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+        collectClasses(argument, classes);
+      }
+    } else if (type instanceof GenericArrayType) {
+      collectClasses(((GenericArrayType) type).getGenericComponentType(), classes);
+    } else if (type instanceof Class) {
+      Class<?> clazz = (Class<?>) type;
+      while (clazz.isArray()) {
+        clazz = clazz.getComponentType();
+      }
+      // JDK classes don't change with the application, and can't be read as resources from every JDK.
+      if (clazz.isPrimitive() || clazz.getClassLoader() == null || classes.put(clazz.getName(), clazz) != null) {
+        return;
+      }
+      for (Field field : clazz.getDeclaredFields()) {
+        collectClasses(field.getGenericType(), classes);
+      }
+      if (clazz.getSuperclass() != null) {
+        collectClasses(clazz.getSuperclass(), classes);
+      }
+    }
+  }
+
+  private static class Schema
+  {
+    private final Collection<Class<?>> classes;
+    /** Hash of the bytecode of the classes, null if some bytecode can't be read. */
+    @Nullable
+    private final String hash;
+
+    Schema(Collection<Class<?>> classes, @Nullable String hash)
+    {
+      this.classes = classes;
+      this.hash = hash;
+    }
+  }
+
+  static class SnapshotKey
+  {
+    /** Hash of the prefix and class. */
+    private final String name;
+    /** Hash of the properties and schema. */
+    private final String inputs;
+
+    SnapshotKey(String name, String inputs)
+    {
+      this.name = name;
+      this.inputs = inputs;
+    }
+
+    File file(File directory)
+    {
+      return new File(directory, name + "-" + inputs + SUFFIX);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.jsonconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+
+/**
+ * Binds the {@link ObjectMapper} used by {@link JsonConfigurator} and the REST resources to a {@link TunedObjectMapper}.
+ * Install it instead of binding a plain {@code ObjectMapper}.
+ */
+public class JacksonModule implements Module
+{
+  @Override
+  public void configure(Binder binder)
+  {
+  }
+
+  @Provides
+  @Singleton
+  public ObjectMapper getObjectMapper()
+  {
+    return new TunedObjectMapper();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.jsonconfig;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Binding;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.spi.Message;
+import com.google.inject.spi.ProviderInstanceBinding;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Materializes the config of every {@link JsonConfigProvider} bound in the injector while it is created, see
+ * {@link JsonConfigModule#JsonConfigModule(int)}.  Configs are materialized and validated in parallel, and every
+ * failure is reported together, so that all the invalid properties are known from a single attempt to start.
+ */
+@Slf4j
+class JsonConfigMaterializer
+{
+  private final int parallelism;
+
+  JsonConfigMaterializer(int parallelism)
+  {
+    this.parallelism = parallelism;
+  }
+
+  @Inject
+  public void materialize(Injector injector) throws InterruptedException
+  {
+    final long startNanos = System.nanoTime();
+    final Map<Key<?>, JsonConfigProvider<?>> providers = new LinkedHashMap<>();
+    for (Binding<?> binding : injector.getBindings().values()) {
+      if (binding instanceof ProviderInstanceBinding
+          && ((ProviderInstanceBinding<?>) binding).getUserSuppliedProvider() instanceof JsonConfigProvider) {
+        final JsonConfigProvider<?> provider =
+            (JsonConfigProvider<?>) ((ProviderInstanceBinding<?>) binding).getUserSuppliedProvider();
+        // The provider may not have been injected yet, and Guice only injects it on the thread creating the injector.
+        injector.injectMembers(provider);
+        providers.put(binding.getKey(), provider);
+      }
+    }
+    if (providers.isEmpty()) {
+      return;
+    }
+
+    final ExecutorService exec = Executors.newFixedThreadPool(
+        Math.min(parallelism, providers.size()),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("JsonConfigMaterializer-%d").build()
+    );
+    try {
+      final Map<Key<?>, Future<?>> futures = new LinkedHashMap<>();
+      for (Map.Entry<Key<?>, JsonConfigProvider<?>> e : providers.entrySet()) {
+        futures.put(e.getKey(), exec.submit(e.getValue()::get));
+      }
+
+      final List<Message> errors = new ArrayList<>();
+      for (Map.Entry<Key<?>, Future<?>> e : futures.entrySet()) {
+        try {
+          e.getValue().get();
+        }
+        catch (ExecutionException ex) {
+          errors.addAll(toMessages(e.getKey(), ex.getCause()));
+        }
+      }
+      if (!errors.isEmpty()) {
+        throw new ProvisionException(errors);
+      }
+    }
+    finally {
+      exec.shutdownNow();
+    }
+    log.info(
+        "Materialized [{}] configs in [{}] ms",
+        providers.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+    );
+  }
+
+  private static List<Message> toMessages(Key<?> key, Throwable t)
+  {
+    if (t instanceof ProvisionException) {
+      return ImmutableList.copyOf(((ProvisionException) t).getErrorMessages());
+    }
+    return ImmutableList.of(
+        new Message(ImmutableList.<Object>of(key), "Unable to materialize " + key + ": " + Throwables.getRootCause(t), t)
+    );
+  }
+}
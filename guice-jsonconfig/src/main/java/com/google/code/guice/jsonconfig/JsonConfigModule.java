@@ -19,9 +19,31 @@ import javax.validation.Validator;
  */
 public class JsonConfigModule implements Module {
 
+  private final int materializeParallelism;
+
+  public JsonConfigModule() {
+    this(0);
+  }
+
+  /**
+   * @param materializeParallelism The number of threads materializing the config of every {@link JsonConfigProvider}
+   *                               binding while the injector is created, with all invalid configs reported together
+   *                               in the creation errors.  0 to materialize each config when it is first injected.
+   */
+  public JsonConfigModule(int materializeParallelism) {
+    if (materializeParallelism < 0) {
+      throw new IllegalArgumentException("materializeParallelism must not be negative");
+    }
+    this.materializeParallelism = materializeParallelism;
+  }
+
   @Override
   public void configure(Binder binder) {
     binder.bind(JsonConfigurator.class).in(Singleton.class);
+    binder.bind(PropertiesIndex.class).in(Singleton.class);
+    if (materializeParallelism > 0) {
+      binder.requestInjection(new JsonConfigMaterializer(materializeParallelism));
+    }
   }
 
   @Provides @Singleton
@@ -46,7 +46,8 @@ import java.util.Properties;
  * <h3>Implementation</h3>
  * <br/>
  * The state of {@code <T>} is defined by the value of the property {@code propertyBase}.
- * This value is a json structure, decoded via {@link JsonConfigurator#configurate(Properties, String, Class)}.
+ * This value is a json structure, decoded via {@link JsonConfigurator#configurate(Properties, String, Class)}.  The
+ * {@code Properties} are looked up through the {@link PropertiesIndex} shared by all providers.
  * <br/>
  *
  * An example might be if DruidServerConfig.class were
@@ -72,6 +73,9 @@ import java.util.Properties;
  * subtracting the "druid.server" prefix from the properties and building a Map which is then passed into
  * ObjectMapper.convertValue()
  *
+ * The config is materialized once.  Configs bound with {@link #bindReloadable} are instead materialized again whenever
+ * the properties are reloaded, see {@link ReloadableSupplier}.
+ *
  * @param <T> type of config object to provide.
  */
 public class JsonConfigProvider<T> implements Provider<Supplier<T>>
@@ -160,6 +164,47 @@ public class JsonConfigProvider<T> implements Provider<Supplier<T>>
     binder.bind(instanceKey).toProvider(new SupplierProvider<>(supplierKey));
   }
 
+  /**
+   * Binds a {@link ReloadableSupplier} of the config, which follows the changes of the properties files watched by the
+   * {@code PropertiesWatcher} of {@code PropertiesModule}, as the {@code Supplier<T>}.  Injecting {@code T} gives the
+   * config current at injection time, components which need to follow changes should inject the supplier and register
+   * a listener with it.
+   */
+  public static <T> void bindReloadable(Binder binder, String propertyBase, Class<T> classToProvide)
+  {
+    bindReloadable(binder, propertyBase, classToProvide, null, null);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> void bindReloadable(
+      Binder binder,
+      String propertyBase,
+      Class<T> classToProvide,
+      @Nullable Class<? extends T> defaultClass,
+      @Nullable Annotation annotation
+  )
+  {
+    final ParameterizedType reloadableType = Types.newParameterizedType(ReloadableSupplier.class, classToProvide);
+    final ParameterizedType supplierType = Types.newParameterizedType(Supplier.class, classToProvide);
+    final Key<ReloadableSupplier<T>> reloadableKey;
+    final Key<Supplier<T>> supplierKey;
+    final Key<T> instanceKey;
+    if (annotation == null) {
+      reloadableKey = (Key) Key.get(reloadableType);
+      supplierKey = (Key) Key.get(supplierType);
+      instanceKey = Key.get(classToProvide);
+    } else {
+      reloadableKey = (Key) Key.get(reloadableType, annotation);
+      supplierKey = (Key) Key.get(supplierType, annotation);
+      instanceKey = Key.get(classToProvide, annotation);
+    }
+    binder.bind(reloadableKey)
+          .toProvider(new ReloadableConfigProvider<>(propertyBase, classToProvide, defaultClass))
+          .in(Singleton.class);
+    binder.bind(supplierKey).to(reloadableKey);
+    binder.bind(instanceKey).toProvider(new SupplierProvider<>(supplierKey));
+  }
+
   @SuppressWarnings("unchecked")
   public static <T> void bindInstance(
       Binder binder,
@@ -201,7 +246,7 @@ public class JsonConfigProvider<T> implements Provider<Supplier<T>>
   private final Class<T> classToProvide;
   private final Class<? extends T> defaultClass;
 
-  private Properties props;
+  private PropertiesIndex props;
   private JsonConfigurator configurator;
 
   private Supplier<T> retVal = null;
@@ -219,7 +264,7 @@ public class JsonConfigProvider<T> implements Provider<Supplier<T>>
 
   @Inject
   public void inject(
-      Properties props,
+      PropertiesIndex props,
       JsonConfigurator configurator
   )
   {
@@ -227,8 +272,11 @@ public class JsonConfigProvider<T> implements Provider<Supplier<T>>
     this.configurator = configurator;
   }
 
+  /**
+   * Synchronized as the config may be materialized by the {@link JsonConfigMaterializer} threads.
+   */
   @Override
-  public Supplier<T> get()
+  public synchronized Supplier<T> get()
   {
     if (retVal != null) {
       return retVal;
@@ -21,13 +21,20 @@ package com.google.code.guice.jsonconfig;
 
 import com.fasterxml.jackson.annotation.JacksonInject;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.fasterxml.jackson.databind.introspect.AnnotatedField;
 import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.MapMaker;
 import com.google.inject.Inject;
 import com.google.inject.ProvisionException;
 import com.google.inject.spi.Message;
@@ -38,18 +45,69 @@ import javax.validation.ConstraintViolation;
 import javax.validation.ElementKind;
 import javax.validation.Path;
 import javax.validation.Validator;
+import javax.validation.metadata.BeanDescriptor;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  */
 @Slf4j
 public class JsonConfigurator
 {
+  /**
+   * The mappers each class has been verified configurable with by {@link #verifyClazzIsConfigurable}.  Mappers are
+   * weakly referenced, and compared by identity.
+   */
+  private static final ClassValue<Set<ObjectMapper>> CONFIGURABLE_WITH = new ClassValue<Set<ObjectMapper>>()
+  {
+    @Override
+    protected Set<ObjectMapper> computeValue(Class<?> type)
+    {
+      return Collections.newSetFromMap(new MapMaker().weakKeys().<ObjectMapper, Boolean>makeMap());
+    }
+  };
+
+  /** Whether default classes have the zero-arg constructor JsonConfigurator requires. */
+  private static final ClassValue<Boolean> HAS_ZERO_ARG_CONSTRUCTOR = new ClassValue<Boolean>()
+  {
+    @Override
+    protected Boolean computeValue(Class<?> type)
+    {
+      try {
+        type.getConstructor();
+        return true;
+      }
+      catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+  };
+
+  /** The paths of the fields of each class named in constraint violations, by field name. */
+  private static final ClassValue<ConcurrentMap<String, PropertyPath>> PROPERTY_PATHS =
+      new ClassValue<ConcurrentMap<String, PropertyPath>>()
+      {
+        @Override
+        protected ConcurrentMap<String, PropertyPath> computeValue(Class<?> type)
+        {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
   private final ObjectMapper jsonMapper;
+  private final ObjectReader valueReader;
+  /** Writes the properties to convert, without a root name, like {@link ObjectMapper#convertValue}. */
+  private final ObjectWriter mapWriter;
+  /** Readers of the configured classes, resolved once per class rather than on every conversion. */
+  private final ConcurrentMap<Class<?>, ObjectReader> configReaders = new ConcurrentHashMap<>();
   private final Validator validator;
+  /** Whether the validator has constraints for each class, looked up once per class. */
+  private final ConcurrentMap<Class<?>, Boolean> constrainedClasses = new ConcurrentHashMap<>();
+  private ConfigSnapshotCache snapshotCache = null;
 
   @Inject
   public JsonConfigurator(
@@ -58,47 +116,91 @@ public class JsonConfigurator
   )
   {
     this.jsonMapper = jsonMapper;
+    this.valueReader = jsonMapper.readerFor(Object.class);
+    this.mapWriter = jsonMapper.writer().without(SerializationFeature.WRAP_ROOT_VALUE);
     this.validator = validator;
   }
 
+  /**
+   * Configs found in the snapshot cache are neither parsed nor validated, and valid configs are written to it.
+   */
+  @Inject(optional = true)
+  public void setSnapshotCache(ConfigSnapshotCache snapshotCache)
+  {
+    this.snapshotCache = snapshotCache;
+  }
+
   public <T> T configurate(Properties props, String propertyPrefix, Class<T> clazz) throws ProvisionException
   {
     return configurate(props, propertyPrefix, clazz, null);
   }
 
+  /**
+   * Scans the properties for the ones under the prefix, use {@link #configurate(PropertiesIndex, String, Class, Class)}
+   * with a shared index to configure several prefixes from the same properties.
+   */
   public <T> T configurate(
       Properties props,
       String propertyPrefix,
       Class<T> clazz,
       @Nullable Class<? extends T> defaultClass
   ) throws ProvisionException
+  {
+    // Cheaper than indexing every property for a single prefix.
+    final String propertyBase = propertyBase(propertyPrefix);
+    final SortedMap<String, String> properties = new TreeMap<>();
+    for (String prop : props.stringPropertyNames()) {
+      if (prop.startsWith(propertyBase)) {
+        properties.put(prop, props.getProperty(prop));
+      }
+    }
+    return configurate(properties, propertyPrefix, clazz, defaultClass);
+  }
+
+  public <T> T configurate(
+      PropertiesIndex props,
+      String propertyPrefix,
+      Class<T> clazz,
+      @Nullable Class<? extends T> defaultClass
+  ) throws ProvisionException
+  {
+    return configurate(props.withPrefix(propertyBase(propertyPrefix)), propertyPrefix, clazz, defaultClass);
+  }
+
+  /**
+   * @param properties The properties under the prefix, sorted by name
+   */
+  <T> T configurate(
+      SortedMap<String, String> properties,
+      String propertyPrefix,
+      Class<T> clazz,
+      @Nullable Class<? extends T> defaultClass
+  ) throws ProvisionException
   {
     verifyClazzIsConfigurable(jsonMapper, clazz, defaultClass);
 
-    // Make it end with a period so we only include properties with sub-object thingies.
-    final String propertyBase = propertyPrefix.endsWith(".") ? propertyPrefix : propertyPrefix + ".";
+    final String propertyBase = propertyBase(propertyPrefix);
 
-    Map<String, Object> jsonMap = new HashMap<>();
-    for (String prop : props.stringPropertyNames()) {
-      if (prop.startsWith(propertyBase)) {
-        final String propValue = props.getProperty(prop);
-        Object value;
-        try {
-          // If it's a String Jackson wants it to be quoted, so check if it's not an object or array and quote.
-          String modifiedPropValue = propValue;
-          if (!(modifiedPropValue.startsWith("[") || modifiedPropValue.startsWith("{"))) {
-            modifiedPropValue = jsonMapper.writeValueAsString(propValue);
-          }
-          value = jsonMapper.readValue(modifiedPropValue, Object.class);
-        }
-        catch (IOException e) {
-          log.info("Unable to parse [{}]=[{}] as a json object, using as is.", prop, propValue, e);
-          value = propValue;
-        }
-        hieraricalPutValue(propertyPrefix, prop, prop.substring(propertyBase.length()), value, jsonMap);
+    // Default instances are cheap to create, and are not of the class snapshots are read as.
+    final boolean useSnapshot = snapshotCache != null && (defaultClass == null || !properties.isEmpty());
+    final ConfigSnapshotCache.SnapshotKey snapshotKey =
+        useSnapshot ? snapshotCache.key(propertyBase, clazz, properties, jsonMapper) : null;
+    if (snapshotKey != null) {
+      final T snapshot = snapshotCache.load(snapshotKey, configReader(clazz));
+      if (snapshot != null) {
+        log.info("Loaded class[{}] from snapshot of props[{}] as [{}]", clazz, propertyBase, snapshot);
+        return snapshot;
       }
     }
 
+    Map<String, Object> jsonMap = new HashMap<>();
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      final String prop = property.getKey();
+      final Object value = parseValue(prop, property.getValue());
+      hieraricalPutValue(propertyPrefix, prop, prop.substring(propertyBase.length()), value, jsonMap);
+    }
+
+    final ConfigBinder<T> binder = ConfigBinders.forClass(clazz);
     final T config;
     try {
       if (defaultClass != null && jsonMap.isEmpty()) {
@@ -106,7 +208,7 @@ public class JsonConfigurator
         // using the no-arg constructor. We know it exists because verifyClazzIsConfigurable checks for it.
         config = defaultClass.getConstructor().newInstance();
       } else {
-        config = jsonMapper.convertValue(jsonMap, clazz);
+        config = convertValue(jsonMap, clazz, binder);
       }
     }
     catch (IllegalArgumentException e) {
@@ -126,40 +228,35 @@ public class JsonConfigurator
       );
     }
 
-    final Set<ConstraintViolation<T>> violations = validator.validate(config);
+    // Binders check the constraints of exactly their class, and leave describing the violations to the Validator.
+    final boolean isValid = !isConstrained(config.getClass())
+                            || (binder != null && config.getClass() == clazz && binder.isValid(config));
+    final Set<ConstraintViolation<T>> violations = isValid ? Collections.emptySet() : validator.validate(config);
     if (!violations.isEmpty()) {
       List<String> messages = new ArrayList<>();
 
       for (ConstraintViolation<T> violation : violations) {
         StringBuilder path = new StringBuilder();
-        try {
-          Class<?> beanClazz = violation.getRootBeanClass();
-          final Iterator<Path.Node> iter = violation.getPropertyPath().iterator();
-          while (iter.hasNext()) {
-            Path.Node next = iter.next();
-            if (next.getKind() == ElementKind.PROPERTY) {
-              final String fieldName = next.getName();
-              final Field theField = beanClazz.getDeclaredField(fieldName);
-
-              if (theField.getAnnotation(JacksonInject.class) != null) {
-                path = new StringBuilder(String.format(" -- Injected field[%s] not bound!?", fieldName));
-                break;
-              }
+        Class<?> beanClazz = violation.getRootBeanClass();
+        final Iterator<Path.Node> iter = violation.getPropertyPath().iterator();
+        while (iter.hasNext()) {
+          Path.Node next = iter.next();
+          if (next.getKind() == ElementKind.PROPERTY) {
+            final String fieldName = next.getName();
+            final PropertyPath propertyPath = propertyPath(beanClazz, fieldName);
 
-              JsonProperty annotation = theField.getAnnotation(JsonProperty.class);
-              final boolean noAnnotationValue = annotation == null || Strings.isNullOrEmpty(annotation.value());
-              final String pathPart = noAnnotationValue ? fieldName : annotation.value();
-              if (path.length() == 0) {
-                path.append(pathPart);
-              } else {
-                path.append(".").append(pathPart);
-              }
+            if (propertyPath.injected) {
+              path = new StringBuilder(String.format(" -- Injected field[%s] not bound!?", fieldName));
+              break;
+            }
+
+            if (path.length() == 0) {
+              path.append(propertyPath.name);
+            } else {
+              path.append(".").append(propertyPath.name);
             }
           }
         }
-        catch (NoSuchFieldException e) {
-          throw new RuntimeException(e);
-        }
 
         messages.add(String.format("%s - %s", path.toString(), violation.getMessage()));
       }
@@ -179,11 +276,121 @@ public class JsonConfigurator
       );
     }
 
+    if (snapshotKey != null) {
+      snapshotCache.store(
+          snapshotKey,
+          jsonMapper.writerFor(clazz).without(SerializationFeature.WRAP_ROOT_VALUE),
+          configReader(clazz),
+          config
+      );
+    }
+
     log.info("Loaded class[{}] from props[{}] as [{}]", clazz, propertyBase, config);
 
     return config;
   }
 
+  /**
+   * @return whether the validator has constraints for the class, validating configs without any is left out
+   */
+  private boolean isConstrained(Class<?> clazz)
+  {
+    return constrainedClasses.computeIfAbsent(
+        clazz,
+        c -> {
+          final BeanDescriptor descriptor = validator.getConstraintsForClass(c);
+          return descriptor == null || descriptor.isBeanConstrained();
+        }
+    );
+  }
+
+  private static PropertyPath propertyPath(Class<?> beanClazz, String fieldName)
+  {
+    final ConcurrentMap<String, PropertyPath> paths = PROPERTY_PATHS.get(beanClazz);
+    PropertyPath path = paths.get(fieldName);
+    if (path == null) {
+      final Field theField;
+      try {
+        theField = beanClazz.getDeclaredField(fieldName);
+      }
+      catch (NoSuchFieldException e) {
+        throw new RuntimeException(e);
+      }
+      final JsonProperty annotation = theField.getAnnotation(JsonProperty.class);
+      final boolean noAnnotationValue = annotation == null || Strings.isNullOrEmpty(annotation.value());
+      path = new PropertyPath(
+          noAnnotationValue ? fieldName : annotation.value(),
+          theField.getAnnotation(JacksonInject.class) != null
+      );
+      paths.put(fieldName, path);
+    }
+    return path;
+  }
+
+  /**
+   * @return the prefix of the properties configuring the given prefix
+   */
+  static String propertyBase(String propertyPrefix)
+  {
+    // Make it end with a period so we only include properties with sub-object thingies.
+    return propertyPrefix.endsWith(".") ? propertyPrefix : propertyPrefix + ".";
+  }
+
+  /**
+   * Does what {@link ObjectMapper#convertValue(Object, Class)} does, with the binder generated for the class if it can
+   * bind the properties, or else with a reader of the class kept across calls.  Like it, the value is converted without
+   * root name, and with big decimals if the mapper deserializes floats as such.
+   */
+  private <T> T convertValue(Map<String, Object> jsonMap, Class<T> clazz, @Nullable ConfigBinder<T> binder)
+  {
+    if (binder != null) {
+      final T config = binder.bind(jsonMap, jsonMapper);
+      if (config != null) {
+        return config;
+      }
+    }
+    try {
+      TokenBuffer buffer = new TokenBuffer(jsonMapper, false);
+      if (jsonMapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)) {
+        buffer = buffer.forceUseOfBigDecimal(true);
+      }
+      mapWriter.writeValue(buffer, jsonMap);
+      return configReader(clazz).readValue(buffer.asParser());
+    }
+    catch (IOException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @return a reader of the class, which doesn't expect a root name, as configs are converted and snapshotted without
+   */
+  private ObjectReader configReader(Class<?> clazz)
+  {
+    return configReaders.computeIfAbsent(
+        clazz,
+        c -> jsonMapper.readerFor(jsonMapper.constructType(c)).without(DeserializationFeature.UNWRAP_ROOT_VALUE)
+    );
+  }
+
+  /**
+   * Objects and arrays are parsed, any other value is used as the string it is: quoting it as a JSON string and parsing
+   * that would give the same string back.
+   */
+  private Object parseValue(String prop, String propValue)
+  {
+    if (!(propValue.startsWith("[") || propValue.startsWith("{"))) {
+      return propValue;
+    }
+    try (JsonParser parser = jsonMapper.getFactory().createParser(propValue)) {
+      return valueReader.readValue(parser);
+    }
+    catch (IOException e) {
+      log.info("Unable to parse [{}]=[{}] as a json object, using as is: {}", prop, propValue, e.getMessage());
+      return propValue;
+    }
+  }
+
   private static void hieraricalPutValue(
       String propertyPrefix,
       String originalProperty,
@@ -224,6 +431,9 @@ public class JsonConfigurator
     hieraricalPutValue(propertyPrefix, originalProperty, property.substring(dotIndex + 1), value, nestedMap);
   }
 
+  /**
+   * Successful verifications are cached, as the same classes are typically configured under many prefixes.
+   */
   @VisibleForTesting
   public static <T> void verifyClazzIsConfigurable(
       ObjectMapper mapper,
@@ -231,20 +441,19 @@ public class JsonConfigurator
       @Nullable Class<? extends T> defaultClass
   )
   {
-    if (defaultClass != null) {
-      try {
-        defaultClass.getConstructor();
-      }
-      catch (NoSuchMethodException e) {
-        throw new ProvisionException(
-                String.format(
-                "JsonConfigurator requires default classes to have zero-arg constructors. %s doesn't",
-                defaultClass
-            )
-        );
-      }
+    if (defaultClass != null && !HAS_ZERO_ARG_CONSTRUCTOR.get(defaultClass)) {
+      throw new ProvisionException(
+              String.format(
+              "JsonConfigurator requires default classes to have zero-arg constructors. %s doesn't",
+              defaultClass
+          )
+      );
     }
 
+    final Set<ObjectMapper> configurableWith = CONFIGURABLE_WITH.get(clazz);
+    if (configurableWith.contains(mapper)) {
+      return;
+    }
     final List<BeanPropertyDefinition> beanDefs = mapper.getSerializationConfig()
                                                         .introspect(mapper.constructType(clazz))
                                                         .findProperties();
@@ -259,5 +468,21 @@ public class JsonConfigurator
         );
       }
     }
+    configurableWith.add(mapper);
+  }
+
+  /**
+   * How a field is named in the path of a constraint violation.
+   */
+  private static class PropertyPath
+  {
+    private final String name;
+    private final boolean injected;
+
+    PropertyPath(String name, boolean injected)
+    {
+      this.name = name;
+      this.injected = injected;
+    }
   }
 }
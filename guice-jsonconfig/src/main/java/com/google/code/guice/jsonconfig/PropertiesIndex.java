@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.jsonconfig;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.inject.Inject;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of {@code Properties}, including their defaults, sorted by name so that the properties under a
+ * prefix are found by a binary search instead of a scan of every property.
+ *
+ * One index is built from the {@code Properties} bound in Guice and shared by every {@link JsonConfigProvider}, which
+ * is why changes made to those {@code Properties} after the index is built are not seen by the providers.
+ */
+public class PropertiesIndex
+{
+  private final ImmutableSortedMap<String, String> properties;
+
+  @Inject
+  public PropertiesIndex(Properties props)
+  {
+    final ImmutableSortedMap.Builder<String, String> builder = ImmutableSortedMap.naturalOrder();
+    for (String name : props.stringPropertyNames()) {
+      builder.put(name, props.getProperty(name));
+    }
+    this.properties = builder.build();
+  }
+
+  private PropertiesIndex(ImmutableSortedMap<String, String> properties)
+  {
+    this.properties = properties;
+  }
+
+  /**
+   * @param changes The changed properties, a null value removes the property
+   *
+   * @return an index of these properties with the changes applied, in time linear with the number of properties
+   */
+  public PropertiesIndex withChanges(Map<String, String> changes)
+  {
+    final TreeMap<String, String> changed = new TreeMap<>(properties);
+    for (Map.Entry<String, String> change : changes.entrySet()) {
+      if (change.getValue() == null) {
+        changed.remove(change.getKey());
+      } else {
+        changed.put(change.getKey(), change.getValue());
+      }
+    }
+    return new PropertiesIndex(ImmutableSortedMap.copyOfSorted(changed));
+  }
+
+  /**
+   * @return the properties whose name starts with the given prefix, sorted by name
+   */
+  public SortedMap<String, String> withPrefix(String prefix)
+  {
+    // Every name starting with the prefix is before the prefix with its last incrementable character incremented.
+    int i = prefix.length() - 1;
+    while (i >= 0 && prefix.charAt(i) == Character.MAX_VALUE) {
+      i--;
+    }
+    if (i < 0) {
+      return properties.tailMap(prefix, true);
+    }
+    final String end = prefix.substring(0, i) + (char) (prefix.charAt(i) + 1);
+    return properties.subMap(prefix, true, end, false);
+  }
+
+  public int size()
+  {
+    return properties.size();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.jsonconfig;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+import javax.annotation.Nullable;
+
+/**
+ * Provides the {@link ReloadableSupplier} bound by {@link JsonConfigProvider#bindReloadable}, created by the
+ * {@link ConfigReloader}.
+ */
+class ReloadableConfigProvider<T> implements Provider<ReloadableSupplier<T>>
+{
+  private final String propertyBase;
+  private final Class<T> classToProvide;
+  private final Class<? extends T> defaultClass;
+
+  private PropertiesIndex props;
+  private JsonConfigurator configurator;
+  private ConfigReloader reloader;
+
+  ReloadableConfigProvider(String propertyBase, Class<T> classToProvide, @Nullable Class<? extends T> defaultClass)
+  {
+    this.propertyBase = propertyBase;
+    this.classToProvide = classToProvide;
+    this.defaultClass = defaultClass;
+  }
+
+  @Inject
+  public void inject(PropertiesIndex props, JsonConfigurator configurator, ConfigReloader reloader)
+  {
+    this.props = props;
+    this.configurator = configurator;
+    this.reloader = reloader;
+  }
+
+  @Override
+  public ReloadableSupplier<T> get()
+  {
+    return reloader.create(propertyBase, classToProvide, defaultClass, configurator, props);
+  }
+}
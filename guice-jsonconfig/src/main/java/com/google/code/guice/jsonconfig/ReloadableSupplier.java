@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.jsonconfig;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Sets;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A config {@link Supplier} bound with {@link JsonConfigProvider#bindReloadable}, which supplies the config
+ * materialized from the latest properties.  When the properties are reloaded, the config is materialized and
+ * validated again if one of the properties it was materialized from changed, and only replaces the current one if that
+ * succeeds.  Listeners are then notified of the change.
+ *
+ * @param <T> type of config object to provide.
+ */
+@Slf4j
+public class ReloadableSupplier<T> implements Supplier<T>
+{
+  public interface Listener<T>
+  {
+    /**
+     * Called on the thread reloading the properties, after the new config has replaced the old one.
+     */
+    void onChange(T oldConfig, T newConfig);
+  }
+
+  private final String propertyBase;
+  /** {@link #propertyBase} ending with a dot, the prefix of the properties the config is materialized from. */
+  private final String prefix;
+  private final Class<T> classToProvide;
+  private final Class<? extends T> defaultClass;
+  private final JsonConfigurator configurator;
+  private final List<Listener<T>> listeners = new CopyOnWriteArrayList<>();
+  private volatile T config;
+  /**
+   * The latest properties under the prefix, which the config was materialized from unless that failed.  Only used by
+   * the {@link ConfigReloader}, under its lock, like {@link #unappliedFields}.
+   */
+  private SortedMap<String, String> consumed;
+  /** The fields changed since the config was last materialized. */
+  private final Set<String> unappliedFields = new TreeSet<>();
+
+  ReloadableSupplier(
+      String propertyBase,
+      Class<T> classToProvide,
+      @Nullable Class<? extends T> defaultClass,
+      JsonConfigurator configurator,
+      PropertiesIndex props
+  )
+  {
+    this.propertyBase = propertyBase;
+    this.prefix = JsonConfigurator.propertyBase(propertyBase);
+    this.classToProvide = classToProvide;
+    this.defaultClass = defaultClass;
+    this.configurator = configurator;
+    this.consumed = ImmutableSortedMap.copyOfSorted(props.withPrefix(prefix));
+    this.config = configurator.configurate(props, propertyBase, classToProvide, defaultClass);
+  }
+
+  @Override
+  public T get()
+  {
+    return config;
+  }
+
+  public void addListener(Listener<T> listener)
+  {
+    listeners.add(listener);
+  }
+
+  /**
+   * Materializes the config from the given properties if one of those it was materialized from changed and, if it is
+   * valid, replaces the current one.
+   *
+   * @return the change, null if the config was not replaced
+   */
+  @Nullable
+  ConfigDiff<T> reload(PropertiesIndex props)
+  {
+    final SortedMap<String, String> newConsumed = props.withPrefix(prefix);
+    if (newConsumed.equals(consumed)) {
+      return null;
+    }
+    final Set<String> changedFields = new TreeSet<>();
+    for (String property : Sets.union(consumed.keySet(), newConsumed.keySet())) {
+      if (!Objects.equals(consumed.get(property), newConsumed.get(property))) {
+        changedFields.add(field(property));
+      }
+    }
+    return replace(newConsumed, changedFields);
+  }
+
+  /**
+   * Applies the changes to the properties the config was materialized from, and materializes it again from them if
+   * one changed, in time proportional to the changes and the properties of the config rather than all the properties.
+   *
+   * @param changes The changed properties, a null value removes the property
+   *
+   * @return the change, null if the config was not replaced
+   */
+  @Nullable
+  ConfigDiff<T> apply(Map<String, String> changes)
+  {
+    SortedMap<String, String> newConsumed = null;
+    final Set<String> changedFields = new TreeSet<>();
+    for (Map.Entry<String, String> change : changes.entrySet()) {
+      final String property = change.getKey();
+      if (!property.startsWith(prefix) || Objects.equals(consumed.get(property), change.getValue())) {
+        continue;
+      }
+      if (newConsumed == null) {
+        newConsumed = new TreeMap<>(consumed);
+      }
+      if (change.getValue() == null) {
+        newConsumed.remove(property);
+      } else {
+        newConsumed.put(property, change.getValue());
+      }
+      changedFields.add(field(property));
+    }
+    return newConsumed == null ? null : replace(newConsumed, changedFields);
+  }
+
+  /**
+   * @return the field of the config set by the property
+   */
+  private String field(String property)
+  {
+    final String field = property.substring(prefix.length());
+    final int dotIndex = field.indexOf('.');
+    return dotIndex < 0 ? field : field.substring(0, dotIndex);
+  }
+
+  @Nullable
+  private ConfigDiff<T> replace(SortedMap<String, String> newConsumed, Set<String> changedFields)
+  {
+    // The latest properties even if the config can't be materialized from them, so that the next changes apply to
+    // them, and are reported with these ones.
+    consumed = ImmutableSortedMap.copyOfSorted(newConsumed);
+    unappliedFields.addAll(changedFields);
+    final T newConfig;
+    try {
+      newConfig = configurator.configurate(newConsumed, propertyBase, classToProvide, defaultClass);
+    }
+    catch (RuntimeException e) {
+      log.error("Unable to reload config at prefix[{}], keeping the current one", propertyBase, e);
+      return null;
+    }
+    final Set<String> fields = ImmutableSortedSet.copyOf(unappliedFields);
+    unappliedFields.clear();
+    final T oldConfig = config;
+    config = newConfig;
+    for (Listener<T> listener : listeners) {
+      try {
+        listener.onChange(oldConfig, newConfig);
+      }
+      catch (RuntimeException e) {
+        log.error("Listener [{}] of config at prefix[{}] failed", listener, propertyBase, e);
+      }
+    }
+    return new ConfigDiff<>(propertyBase, classToProvide, oldConfig, newConfig, fields);
+  }
+
+  public String getPropertyBase()
+  {
+    return propertyBase;
+  }
+
+  String getPrefix()
+  {
+    return prefix;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.google.code.guice.jsonconfig;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link ObjectMapper} tuned for throughput, bound by {@link JacksonModule}:
+ *
+ * - Bean properties are accessed through bytecode generated by Afterburner instead of reflection, for the non-private
+ *   fields, methods and constructors.
+ * - Field names are canonicalized and interned by the parsers, so that they are looked up by identity.
+ * - The readers and writers of a class are created once, {@link #readerFor(Class)} and {@link #writerFor(Class)}
+ *   return the same instance on every call.  Readers and writers capture the configuration of the mapper, so the
+ *   mapper must be configured before it is used.
+ *
+ * The Guava and Joda modules are registered as well, for configs such as {@code ServerConfig} using their types.
+ */
+public class TunedObjectMapper extends ObjectMapper
+{
+  private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  public TunedObjectMapper()
+  {
+    getFactory().enable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+    getFactory().enable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+    registerModule(new AfterburnerModule());
+    registerModule(new GuavaModule());
+    registerModule(new JodaModule());
+  }
+
+  private TunedObjectMapper(TunedObjectMapper mapper)
+  {
+    super(mapper);
+  }
+
+  @Override
+  public ObjectMapper copy()
+  {
+    _checkInvalidCopy(TunedObjectMapper.class);
+    return new TunedObjectMapper(this);
+  }
+
+  @Override
+  public ObjectReader readerFor(Class<?> type)
+  {
+    return readers.computeIfAbsent(type, super::readerFor);
+  }
+
+  @Override
+  public ObjectWriter writerFor(Class<?> rootType)
+  {
+    return writers.computeIfAbsent(rootType, super::writerFor);
+  }
+}
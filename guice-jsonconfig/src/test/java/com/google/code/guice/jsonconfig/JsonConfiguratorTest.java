@@ -21,20 +21,40 @@ package com.google.code.guice.jsonconfig;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.name.Names;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import javax.validation.Validation;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import javax.validation.executable.ExecutableValidator;
 import javax.validation.metadata.BeanDescriptor;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class JsonConfiguratorTest
 {
@@ -42,6 +62,9 @@ public class JsonConfiguratorTest
   private final ObjectMapper mapper = new TestObjectMapper();
   private final Properties properties = new Properties();
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
   public void setUp()
   {
@@ -159,6 +182,445 @@ public class JsonConfiguratorTest
 
   }
 
+  @Test
+  public void testScalarAndMalformedValues()
+  {
+    final JsonConfigurator configurator = new JsonConfigurator(mapper, validator);
+    properties.setProperty(PROP_PREFIX + "prop1", "[not json");
+    properties.setProperty(PROP_PREFIX + "prop1List", "[\"a\", \"b\"]");
+    properties.setProperty(PROP_PREFIX + "prop2.prop.2", "  {spaced}  ");
+    final MappableObject obj = configurator.configurate(properties, PROP_PREFIX, MappableObject.class);
+    Assert.assertEquals("[not json", obj.prop1);
+    Assert.assertEquals(ImmutableList.of("a", "b"), obj.prop1List);
+    Assert.assertEquals("  {spaced}  ", obj.prop2);
+  }
+
+  @Test
+  public void testVerificationIsCachedOnlyOnSuccess()
+  {
+    JsonConfigurator.verifyClazzIsConfigurable(mapper, MappableObject.class, null);
+    JsonConfigurator.verifyClazzIsConfigurable(mapper, MappableObject.class, null);
+    for (int i = 0; i < 2; i++) {
+      try {
+        JsonConfigurator.verifyClazzIsConfigurable(mapper, UnannotatedObject.class, null);
+        Assert.fail("Classes without field annotations are not configurable");
+      }
+      catch (ProvisionException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains("field annotations"));
+      }
+    }
+  }
+
+  @Test
+  public void testPropertiesIndex()
+  {
+    final Properties defaults = new Properties();
+    defaults.setProperty(PROP_PREFIX + "prop1", "default");
+    final Properties props = new Properties(defaults);
+    props.setProperty(PROP_PREFIX + "prop1List", "[\"prop2\"]");
+    props.setProperty("test.property.prefixes", "outside");
+    props.setProperty("test.property.prefix", "outside");
+    final PropertiesIndex index = new PropertiesIndex(props);
+    Assert.assertEquals(
+        ImmutableList.of(PROP_PREFIX + "prop1", PROP_PREFIX + "prop1List"),
+        ImmutableList.copyOf(index.withPrefix(PROP_PREFIX).keySet())
+    );
+
+    final JsonConfigurator configurator = new JsonConfigurator(mapper, validator);
+    final MappableObject obj = configurator.configurate(index, PROP_PREFIX, MappableObject.class, null);
+    Assert.assertEquals("default", obj.prop1);
+    Assert.assertEquals(ImmutableList.of("prop2"), obj.prop1List);
+
+    // The one-shot overload scans the same properties, defaults included, without building an index.
+    Assert.assertEquals(obj, configurator.configurate(props, PROP_PREFIX, MappableObject.class, null));
+  }
+
+  @Test
+  public void testSnapshotCache() throws Exception
+  {
+    final File directory = temporaryFolder.newFolder();
+    final AtomicInteger validations = new AtomicInteger();
+    final Validator countingValidator = countingValidator(validator, validations);
+    properties.setProperty(PROP_PREFIX + "prop1", "prop1");
+    properties.setProperty(PROP_PREFIX + "prop1List", "[\"prop2\"]");
+
+    for (int boot = 0; boot < 2; boot++) {
+      final JsonConfigurator configurator = new JsonConfigurator(mapper, countingValidator);
+      configurator.setSnapshotCache(new ConfigSnapshotCache(directory));
+      final MappableObject obj = configurator.configurate(properties, PROP_PREFIX, MappableObject.class);
+      Assert.assertEquals(new MappableObject("prop1", ImmutableList.of("prop2"), null), obj);
+      // Only the first boot materializes and validates the config, the second one reads the snapshot.
+      Assert.assertEquals(1, validations.get());
+      Assert.assertEquals(1, directory.list().length);
+    }
+
+    properties.setProperty(PROP_PREFIX + "prop1", "changed");
+    final JsonConfigurator configurator = new JsonConfigurator(mapper, countingValidator);
+    configurator.setSnapshotCache(new ConfigSnapshotCache(directory));
+    Assert.assertEquals("changed", configurator.configurate(properties, PROP_PREFIX, MappableObject.class).prop1);
+    Assert.assertEquals(2, validations.get());
+    // The snapshot of the previous properties was replaced.
+    Assert.assertEquals(1, directory.list().length);
+  }
+
+  @Test
+  public void testSnapshotReadsBackTheWrittenFields() throws Exception
+  {
+    final File directory = temporaryFolder.newFolder();
+    properties.setProperty(PROP_PREFIX + "name", "nested");
+    properties.setProperty(PROP_PREFIX + "ratio", "0.25");
+    properties.setProperty(PROP_PREFIX + "ports", "{\"http\": {\"port\": 8080}, \"https\": {\"port\": 8443}}");
+
+    final JsonConfigurator writing = new JsonConfigurator(mapper, validator);
+    writing.setSnapshotCache(new ConfigSnapshotCache(directory));
+    final SnapshotObject written = writing.configurate(properties, PROP_PREFIX, SnapshotObject.class);
+    Assert.assertEquals(1, directory.list().length);
+
+    final AtomicInteger validations = new AtomicInteger();
+    final JsonConfigurator reading = new JsonConfigurator(mapper, countingValidator(validator, validations));
+    reading.setSnapshotCache(new ConfigSnapshotCache(directory));
+    final SnapshotObject read = reading.configurate(properties, PROP_PREFIX, SnapshotObject.class);
+    Assert.assertEquals(0, validations.get());
+    Assert.assertNotSame(written, read);
+    Assert.assertEquals(written.name, read.name);
+    Assert.assertEquals(written.ratio, read.ratio, 0);
+    Assert.assertEquals(written.ports.keySet(), read.ports.keySet());
+    for (String name : written.ports.keySet()) {
+      Assert.assertEquals(written.ports.get(name).port, read.ports.get(name).port);
+    }
+  }
+
+  @Test
+  public void testSnapshotIsNotWrittenForClassesThatDontReadBack() throws Exception
+  {
+    final File directory = temporaryFolder.newFolder();
+    properties.setProperty(PROP_PREFIX + "name", "lower");
+
+    final JsonConfigurator configurator = new JsonConfigurator(mapper, validator);
+    configurator.setSnapshotCache(new ConfigSnapshotCache(directory));
+    Assert.assertEquals("lower", configurator.configurate(properties, PROP_PREFIX, UpperCaseObject.class).name);
+    // The name is serialized through its getter, so a snapshot would read back as "LOWER".
+    Assert.assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void testSnapshotIsNotReadWithADifferentlyConfiguredMapper() throws Exception
+  {
+    final File directory = temporaryFolder.newFolder();
+    final AtomicInteger validations = new AtomicInteger();
+    final Validator countingValidator = countingValidator(validator, validations);
+    properties.setProperty(PROP_PREFIX + "prop1", "prop1");
+
+    final JsonConfigurator configurator = new JsonConfigurator(mapper, countingValidator);
+    configurator.setSnapshotCache(new ConfigSnapshotCache(directory));
+    configurator.configurate(properties, PROP_PREFIX, MappableObject.class);
+    Assert.assertEquals(1, validations.get());
+
+    final List<ObjectMapper> otherMappers = ImmutableList.of(
+        new TestObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS),
+        new TestObjectMapper().addMixIn(MappableObject.class, MappableObjectMixIn.class)
+    );
+    for (ObjectMapper otherMapper : otherMappers) {
+      final JsonConfigurator other = new JsonConfigurator(otherMapper, countingValidator);
+      other.setSnapshotCache(new ConfigSnapshotCache(directory));
+      other.configurate(properties, PROP_PREFIX, MappableObject.class);
+    }
+    Assert.assertEquals(3, validations.get());
+  }
+
+  @Test
+  public void testGeneratedBinder()
+  {
+    Assert.assertNotNull(ConfigBinders.forClass(BoundConfig.class));
+    // Classes with creators are left to Jackson.
+    Assert.assertNull(ConfigBinders.forClass(MappableObject.class));
+
+    final AtomicInteger validations = new AtomicInteger();
+    final JsonConfigurator configurator = new JsonConfigurator(
+        mapper,
+        countingValidator(Validation.buildDefaultValidatorFactory().getValidator(), validations)
+    );
+    properties.setProperty(PROP_PREFIX + "name", "bound");
+    properties.setProperty(PROP_PREFIX + "timeout", "42");
+    properties.setProperty(PROP_PREFIX + "enabled", "true");
+    properties.setProperty(PROP_PREFIX + "names", "[\"a\", \"b\"]");
+    final BoundConfig config = configurator.configurate(properties, PROP_PREFIX, BoundConfig.class);
+    Assert.assertEquals("bound", config.name);
+    Assert.assertEquals(42L, config.timeout);
+    Assert.assertEquals(Boolean.TRUE, config.enabled);
+    Assert.assertEquals(ImmutableList.of("a", "b"), config.names);
+    // The constraints were checked by the binder.
+    Assert.assertEquals(0, validations.get());
+
+    // Violations are described by the Validator.
+    properties.setProperty(PROP_PREFIX + "timeout", "0");
+    try {
+      configurator.configurate(properties, PROP_PREFIX, BoundConfig.class);
+      Assert.fail("Invalid configs are rejected");
+    }
+    catch (ProvisionException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("timeout - must be greater than or equal to 1"));
+    }
+    Assert.assertEquals(1, validations.get());
+
+    // Values the binder can't convert are converted by the mapper.
+    properties.setProperty(PROP_PREFIX + "timeout", " 7");
+    properties.setProperty(PROP_PREFIX + "unknown", "ignored");
+    Assert.assertEquals(7L, configurator.configurate(properties, PROP_PREFIX, BoundConfig.class).timeout);
+  }
+
+  @Test
+  public void testGeneratedBinderOfPrivateFields()
+  {
+    Assert.assertNotNull(ConfigBinders.forClass(PrivateConfig.class));
+
+    final AtomicInteger validations = new AtomicInteger();
+    final JsonConfigurator configurator = new JsonConfigurator(
+        mapper,
+        countingValidator(Validation.buildDefaultValidatorFactory().getValidator(), validations)
+    );
+    properties.setProperty(PROP_PREFIX + "name", "private");
+    properties.setProperty(PROP_PREFIX + "port", "8081");
+    properties.setProperty(PROP_PREFIX + "names", "[\"a\"]");
+    final PrivateConfig config = configurator.configurate(properties, PROP_PREFIX, PrivateConfig.class);
+    Assert.assertEquals("private", config.getName());
+    Assert.assertEquals(8081, config.getPort());
+    Assert.assertEquals(ImmutableList.of("a"), config.getNames());
+    Assert.assertEquals(0, validations.get());
+
+    properties.setProperty(PROP_PREFIX + "port", "0");
+    try {
+      configurator.configurate(properties, PROP_PREFIX, PrivateConfig.class);
+      Assert.fail("Invalid configs are rejected");
+    }
+    catch (ProvisionException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("port - must be greater than or equal to 1"));
+    }
+    Assert.assertEquals(1, validations.get());
+  }
+
+  @Test
+  public void testUnconstrainedClassesAreNotValidated()
+  {
+    final AtomicInteger validations = new AtomicInteger();
+    final JsonConfigurator configurator = new JsonConfigurator(
+        mapper,
+        countingValidator(Validation.buildDefaultValidatorFactory().getValidator(), validations)
+    );
+    properties.setProperty(PROP_PREFIX + "prop1", "prop1");
+    configurator.configurate(properties, PROP_PREFIX, MappableObject.class);
+    Assert.assertEquals(0, validations.get());
+
+    // Violations name the JSON properties of the fields, looked up once per class.
+    properties.setProperty(PROP_PREFIX + "port", "0");
+    for (int i = 0; i < 2; i++) {
+      try {
+        configurator.configurate(properties, PROP_PREFIX, PortConfig.class);
+        Assert.fail("Invalid configs are rejected");
+      }
+      catch (ProvisionException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains(PROP_PREFIX + "port - must be greater than"));
+      }
+    }
+    Assert.assertEquals(2, validations.get());
+  }
+
+  @Test
+  public void testTunedObjectMapper()
+  {
+    final TunedObjectMapper tunedMapper = new TunedObjectMapper();
+    Assert.assertSame(tunedMapper.readerFor(MappableObject.class), tunedMapper.readerFor(MappableObject.class));
+    Assert.assertSame(tunedMapper.writerFor(MappableObject.class), tunedMapper.writerFor(MappableObject.class));
+    Assert.assertTrue(tunedMapper.copy() instanceof TunedObjectMapper);
+
+    final JsonConfigurator configurator = new JsonConfigurator(tunedMapper, validator);
+    properties.setProperty(PROP_PREFIX + "prop1", "prop1");
+    properties.setProperty(PROP_PREFIX + "prop1List", "[\"prop2\"]");
+    Assert.assertEquals(
+        new MappableObject("prop1", ImmutableList.of("prop2"), null),
+        configurator.configurate(properties, PROP_PREFIX, MappableObject.class)
+    );
+  }
+
+  @Test
+  public void testMaterializeAllAtInjectorCreation()
+  {
+    final Properties props = new Properties();
+    props.setProperty("test.valid.port", "8080");
+    props.setProperty("test.invalid1.port", "0");
+    props.setProperty("test.invalid2.port", "-1");
+    try {
+      Guice.createInjector(
+          new JsonConfigModule(2),
+          binder -> {
+            binder.bind(Properties.class).toInstance(props);
+            binder.bind(ObjectMapper.class).toInstance(new TestObjectMapper());
+            JsonConfigProvider.bind(binder, "test.valid", PortConfig.class, Names.named("valid"));
+            JsonConfigProvider.bind(binder, "test.invalid1", PortConfig.class, Names.named("invalid1"));
+            JsonConfigProvider.bind(binder, "test.invalid2", PortConfig.class, Names.named("invalid2"));
+          }
+      );
+      Assert.fail("Invalid configs fail the injector creation");
+    }
+    catch (CreationException e) {
+      // Every invalid config is reported, not only the first one.
+      final String message = e.getMessage();
+      Assert.assertTrue(message, message.contains("test.invalid1.port - must be greater than or equal to 1"));
+      Assert.assertTrue(message, message.contains("test.invalid2.port - must be greater than or equal to 1"));
+    }
+
+    props.setProperty("test.invalid1.port", "1");
+    props.setProperty("test.invalid2.port", "2");
+    final Injector injector = Guice.createInjector(
+        new JsonConfigModule(2),
+        binder -> {
+          binder.bind(Properties.class).toInstance(props);
+          binder.bind(ObjectMapper.class).toInstance(new TestObjectMapper());
+          JsonConfigProvider.bind(binder, "test.valid", PortConfig.class, Names.named("valid"));
+          JsonConfigProvider.bind(binder, "test.invalid1", PortConfig.class, Names.named("invalid1"));
+        }
+    );
+    Assert.assertEquals(8080, injector.getInstance(Key.get(PortConfig.class, Names.named("valid"))).port);
+  }
+
+  @Test
+  public void testConvertsLikeObjectMapperWithRootNamesAndBigDecimals()
+  {
+    final ObjectMapper featuredMapper = new TestObjectMapper()
+        .enable(SerializationFeature.WRAP_ROOT_VALUE)
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    final JsonConfigurator configurator = new JsonConfigurator(featuredMapper, validator);
+    properties.setProperty(PROP_PREFIX + "values", "[1.5, 2]");
+    final NumbersObject config = configurator.configurate(properties, PROP_PREFIX, NumbersObject.class);
+    Assert.assertEquals(ImmutableList.of(new BigDecimal("1.5"), 2), config.values);
+    Assert.assertEquals(
+        featuredMapper.convertValue(ImmutableMap.of("values", ImmutableList.of(1.5, 2)), NumbersObject.class).values,
+        config.values
+    );
+  }
+
+  private static Validator countingValidator(Validator delegate, AtomicInteger validations)
+  {
+    return (Validator) Proxy.newProxyInstance(
+        Validator.class.getClassLoader(),
+        new Class[]{Validator.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("validate")) {
+            validations.incrementAndGet();
+          }
+          return method.invoke(delegate, args);
+        }
+    );
+  }
+
+  public static class BoundConfig
+  {
+    @JsonProperty
+    @NotNull
+    String name;
+
+    @JsonProperty
+    @Min(1)
+    long timeout = 10;
+
+    @JsonProperty
+    Boolean enabled;
+
+    @JsonProperty
+    List<String> names = ImmutableList.of();
+  }
+
+  public static class PrivateConfig
+  {
+    @JsonProperty
+    @NotNull
+    private String name;
+
+    @JsonProperty
+    @Min(1)
+    private int port = 80;
+
+    @JsonProperty
+    private List<String> names = ImmutableList.of();
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public int getPort()
+    {
+      return port;
+    }
+
+    public List<String> getNames()
+    {
+      return names;
+    }
+  }
+
+  public static class PortConfig
+  {
+    @JsonProperty
+    @Min(1)
+    int port = 80;
+  }
+
+  public static class NumbersObject
+  {
+    @JsonProperty("values")
+    final List<Object> values;
+
+    @JsonCreator
+    public NumbersObject(@JsonProperty("values") List<Object> values)
+    {
+      this.values = values;
+    }
+  }
+
+  public static class SnapshotObject
+  {
+    @JsonProperty("name")
+    String name;
+    @JsonProperty("ratio")
+    double ratio;
+    @JsonProperty("ports")
+    Map<String, PortObject> ports;
+  }
+
+  public static class PortObject
+  {
+    @JsonProperty("port")
+    int port;
+  }
+
+  public static class UpperCaseObject
+  {
+    @JsonProperty("name")
+    String name;
+
+    @JsonProperty("name")
+    public String getName()
+    {
+      return name.toUpperCase(Locale.ROOT);
+    }
+  }
+
+  public abstract static class MappableObjectMixIn
+  {
+    @JsonProperty(value = "prop1", required = true)
+    String prop1;
+  }
+
+  public static class UnannotatedObject
+  {
+    @JsonProperty
+    public String getValue()
+    {
+      return null;
+    }
+  }
+
   public static class MappableObject {
     @JsonProperty("prop1")
     final String prop1;
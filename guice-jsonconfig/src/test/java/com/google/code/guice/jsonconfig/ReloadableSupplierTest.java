@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.jsonconfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ReloadableSupplierTest
+{
+  private static final String PROP_PREFIX = "test.reloadable";
+
+  @Test
+  public void testReload()
+  {
+    final Properties props = new Properties();
+    props.setProperty(PROP_PREFIX + ".prop1", "before");
+    final Injector injector = Guice.createInjector(
+        new JsonConfigModule(),
+        binder -> {
+          binder.bind(Properties.class).toInstance(props);
+          binder.bind(ObjectMapper.class).toInstance(new TestObjectMapper());
+          JsonConfigProvider.bindReloadable(binder, PROP_PREFIX, JsonConfiguratorTest.MappableObject.class);
+        }
+    );
+    final ReloadableSupplier<JsonConfiguratorTest.MappableObject> supplier = injector.getInstance(
+        Key.get(new TypeLiteral<ReloadableSupplier<JsonConfiguratorTest.MappableObject>>() {})
+    );
+    final List<String> changes = new CopyOnWriteArrayList<>();
+    supplier.addListener((oldConfig, newConfig) -> changes.add(oldConfig.getProp1() + " -> " + newConfig.getProp1()));
+    Assert.assertSame(
+        supplier,
+        injector.getInstance(Key.get(new TypeLiteral<Supplier<JsonConfiguratorTest.MappableObject>>() {}))
+    );
+    Assert.assertEquals("before", injector.getInstance(JsonConfiguratorTest.MappableObject.class).getProp1());
+
+    final Properties reloaded = new Properties();
+    reloaded.setProperty(PROP_PREFIX + ".prop1", "after");
+    injector.getInstance(ConfigReloader.class).reload(reloaded);
+    Assert.assertEquals("after", supplier.get().getProp1());
+    Assert.assertEquals("after", injector.getInstance(JsonConfiguratorTest.MappableObject.class).getProp1());
+    Assert.assertEquals(ImmutableList.of("before -> after"), changes);
+
+    // A config which can't be materialized doesn't replace the current one.
+    final Properties invalid = new Properties();
+    invalid.setProperty(PROP_PREFIX + ".prop1List", "{\"not\": \"a list\"}");
+    injector.getInstance(ConfigReloader.class).reload(invalid);
+    Assert.assertEquals("after", supplier.get().getProp1());
+    Assert.assertEquals(1, changes.size());
+  }
+
+  @Test
+  public void testApplyChanges()
+  {
+    final Properties props = new Properties();
+    props.setProperty(PROP_PREFIX + ".prop1", "before");
+    props.setProperty(PROP_PREFIX + "2.prop1", "other");
+    final Injector injector = Guice.createInjector(
+        new JsonConfigModule(),
+        binder -> {
+          binder.bind(Properties.class).toInstance(props);
+          binder.bind(ObjectMapper.class).toInstance(new TestObjectMapper());
+          JsonConfigProvider.bindReloadable(binder, PROP_PREFIX, JsonConfiguratorTest.MappableObject.class);
+          JsonConfigProvider.bindReloadable(
+              binder,
+              PROP_PREFIX + "2",
+              JsonConfiguratorTest.MappableObject.class,
+              null,
+              Names.named("other")
+          );
+        }
+    );
+    final JsonConfiguratorTest.MappableObject other = injector.getInstance(
+        Key.get(JsonConfiguratorTest.MappableObject.class, Names.named("other"))
+    );
+    final ReloadableSupplier<JsonConfiguratorTest.MappableObject> supplier = injector.getInstance(
+        Key.get(new TypeLiteral<ReloadableSupplier<JsonConfiguratorTest.MappableObject>>() {})
+    );
+    final ConfigReloader reloader = injector.getInstance(ConfigReloader.class);
+
+    final List<ConfigDiff<?>> diffs = reloader.apply(
+        ImmutableMap.of(PROP_PREFIX + ".prop1", "after", PROP_PREFIX + ".prop1List", "[\"a\"]")
+    );
+    Assert.assertEquals(1, diffs.size());
+    final ConfigDiff<?> diff = diffs.get(0);
+    Assert.assertEquals(PROP_PREFIX, diff.getPropertyBase());
+    Assert.assertEquals(ImmutableSet.of("prop1", "prop1List"), diff.getChangedFields());
+    Assert.assertEquals("before", ((JsonConfiguratorTest.MappableObject) diff.getOldConfig()).getProp1());
+    Assert.assertSame(supplier.get(), diff.getNewConfig());
+    Assert.assertEquals(ImmutableList.of("a"), supplier.get().getProp1List());
+    Assert.assertSame(
+        other,
+        injector.getInstance(Key.get(JsonConfiguratorTest.MappableObject.class, Names.named("other")))
+    );
+
+    // Setting a property to its current value, or removing an absent one, changes nothing.
+    Assert.assertEquals(
+        Collections.emptyList(),
+        reloader.apply(ImmutableMap.of(PROP_PREFIX + ".prop1", "after"))
+    );
+    Assert.assertEquals(
+        Collections.emptyList(),
+        reloader.apply(Collections.singletonMap(PROP_PREFIX + ".prop2", null))
+    );
+  }
+
+  @Test
+  public void testApplyAfterAFailedChange()
+  {
+    final Properties props = new Properties();
+    props.setProperty(PROP_PREFIX + ".prop1", "before");
+    final Injector injector = Guice.createInjector(
+        new JsonConfigModule(),
+        binder -> {
+          binder.bind(Properties.class).toInstance(props);
+          binder.bind(ObjectMapper.class).toInstance(new TestObjectMapper());
+          JsonConfigProvider.bindReloadable(binder, PROP_PREFIX, JsonConfiguratorTest.MappableObject.class);
+        }
+    );
+    final ReloadableSupplier<JsonConfiguratorTest.MappableObject> supplier = injector.getInstance(
+        Key.get(new TypeLiteral<ReloadableSupplier<JsonConfiguratorTest.MappableObject>>() {})
+    );
+    final ConfigReloader reloader = injector.getInstance(ConfigReloader.class);
+
+    // Can't be materialized, the current config is kept.
+    Assert.assertEquals(
+        Collections.emptyList(),
+        reloader.apply(ImmutableMap.of(PROP_PREFIX + ".prop1List", "{\"not\": \"a list\"}"))
+    );
+    Assert.assertEquals("before", supplier.get().getProp1());
+    // Still can't be, the invalid property is still there.
+    Assert.assertEquals(Collections.emptyList(), reloader.apply(ImmutableMap.of(PROP_PREFIX + ".prop1", "after")));
+    Assert.assertEquals("before", supplier.get().getProp1());
+
+    // Fixed, with the fields changed since the config was last materialized.
+    final List<ConfigDiff<?>> diffs = reloader.apply(ImmutableMap.of(PROP_PREFIX + ".prop1List", "[\"a\"]"));
+    Assert.assertEquals(1, diffs.size());
+    Assert.assertEquals(ImmutableSet.of("prop1", "prop1List"), diffs.get(0).getChangedFields());
+    Assert.assertEquals("after", supplier.get().getProp1());
+    Assert.assertEquals(ImmutableList.of("a"), supplier.get().getProp1List());
+
+    // Configs created later see the applied changes.
+    final ReloadableSupplier<JsonConfiguratorTest.MappableObject> later = reloader.create(
+        PROP_PREFIX,
+        JsonConfiguratorTest.MappableObject.class,
+        null,
+        injector.getInstance(JsonConfigurator.class),
+        injector.getInstance(PropertiesIndex.class)
+    );
+    Assert.assertEquals(supplier.get(), later.get());
+  }
+}
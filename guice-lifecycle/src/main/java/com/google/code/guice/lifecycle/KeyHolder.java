@@ -26,16 +26,35 @@ import com.google.inject.Key;
 public class KeyHolder<T>
 {
   private final Key<? extends T> key;
+  private final int phase;
 
   public KeyHolder(
       Key<? extends T> key
   )
+  {
+    this(key, 0);
+  }
+
+  /**
+   * @param phase Ordering hint for eager loading: all keys of a lower phase are loaded before any key of a higher one,
+   *              keys of the same phase may be loaded concurrently.
+   */
+  public KeyHolder(
+      Key<? extends T> key,
+      int phase
+  )
   {
     this.key = key;
+    this.phase = phase;
   }
 
   public Key<? extends T> getKey()
   {
     return key;
   }
+
+  public int getPhase()
+  {
+    return phase;
+  }
 }
@@ -19,32 +19,68 @@
 
 package com.google.code.guice.lifecycle;
 
+import com.google.code.guice.common.utils.JvmUtils;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * A manager of object Lifecycles.
  *
  * This object has methods for registering objects that should be started and stopped.  The Lifecycle allows for
- * four stages: Stage.INIT, Stage.NORMAL, Stage.SERVER, and Stage.ANNOUNCEMENTS.
+ * five stages: Stage.INIT, Stage.NORMAL, Stage.WARMUP, Stage.SERVER, and Stage.ANNOUNCEMENTS.
  *
  * Things added at Stage.INIT will be started first (in the order that they are added to the Lifecycle instance) and
- * then things added at Stage.NORMAL, then Stage.SERVER, and finally, Stage.ANNOUNCEMENTS will be started.
+ * then things added at Stage.NORMAL, then Stage.WARMUP, then Stage.SERVER, and finally, Stage.ANNOUNCEMENTS will be
+ * started.
  *
  * The close operation goes in reverse order, starting with the last thing added at Stage.ANNOUNCEMENTS and working
  * backwards.
@@ -56,6 +92,10 @@ import java.util.concurrent.locks.ReentrantLock;
  *    logging during start or stop).
  *  - Stage.NORMAL: This is the default stage. Most objects will probably make the most sense to be registered at
  *    this level, with the exception of any form of server or service announcements
+ *  - Stage.WARMUP: Objects which get the process ready to serve, like caches preloading their content.  Once they have
+ *    started, the warmup tasks added with {@link #addWarmupTask(String, Runnable)} run in parallel within a time
+ *    budget, and the lifecycle only moves on to Stage.SERVER once every readiness check added with
+ *    {@link #addReadinessCheck(String, BooleanSupplier)} passes.
  *  - Stage.SERVER: This lifecycle stage is intended for all 'server' objects, and currently only contains the Jetty
  *    module, but any sort of 'server' that expects most Lifecycle objects to be initialized by the time it starts, and
  *    still available at the time it stops can logically live in this stage.
@@ -66,6 +106,18 @@ import java.util.concurrent.locks.ReentrantLock;
  * There are two sets of methods to add things to the Lifecycle.  One set that will just add instances and enforce that
  * start() has not been called yet.  The other set will add instances and, if the lifecycle is already started, start
  * them.
+ *
+ * By default all handlers are started one after another.  With {@link #setStartParallelism(int)} the handlers of a
+ * stage are instead started on a bounded pool of threads, honoring the dependencies declared through
+ * {@link #addHandler(Handler, Stage, Handler...)}.  Stages are still strict barriers: no handler of a stage is started
+ * before every handler of the previous stage has started.  Likewise {@link #setStopTimeout(long, long, TimeUnit)} makes
+ * close stop the handlers of a stage in parallel, bounded by a deadline.
+ *
+ * An {@link AsyncHandler} doesn't hold a thread while it starts or stops: its start is initiated in turn, and a stage
+ * only completes once the futures returned by all of its asynchronous handlers have completed.
+ *
+ * The time taken to start every handler is recorded by a {@link StartupProfiler}, whose report of the slowest handlers
+ * and of the critical path is logged once start() succeeds, and written to {@link #setStartupReportFile(File)}.
  */
 @Slf4j
 public class Lifecycle
@@ -75,6 +127,7 @@ public class Lifecycle
   {
     INIT,
     NORMAL,
+    WARMUP,
     SERVER,
     ANNOUNCEMENTS
   }
@@ -89,13 +142,60 @@ public class Lifecycle
     STOP
   }
 
+  /** Constructors of the handlers generated by {@link LifecycleHandlerProcessor}, keyed by the class they handle. */
+  private static final ClassValue<Optional<MethodHandle>> GENERATED_HANDLERS = new ClassValue<Optional<MethodHandle>>()
+  {
+    @Override
+    protected Optional<MethodHandle> computeValue(Class<?> type)
+    {
+      final String handlerName = type.getName() + LifecycleHandlerProcessor.HANDLER_SUFFIX;
+      final Class<?> handlerClass;
+      try {
+        handlerClass = Class.forName(handlerName, true, type.getClassLoader());
+      }
+      catch (ClassNotFoundException | LinkageError e) {
+        return Optional.empty();
+      }
+      try {
+        return Optional.of(
+            MethodHandles.publicLookup()
+                         .findConstructor(handlerClass, MethodType.methodType(void.class, type))
+                         .asType(MethodType.methodType(Handler.class, Object.class))
+        );
+      }
+      catch (NoSuchMethodException | IllegalAccessException e) {
+        log.warn("Ignoring generated lifecycle handler [{}]", handlerClass, e);
+        return Optional.empty();
+      }
+    }
+  };
+
+  private static final long READINESS_POLL_MILLIS = 100;
+
+  /** Marks the threads starting handlers on behalf of a parallel {@link #start()} of the given Lifecycle. */
+  private static final ThreadLocal<Lifecycle> PARALLEL_START_WORKER = new ThreadLocal<>();
+
   private final NavigableMap<Stage, CopyOnWriteArrayList<Handler>> handlers;
+  /** Start dependencies declared with {@link #addHandler(Handler, Stage, Handler...)}, keyed by the dependent handler. */
+  private final Map<Handler, List<Handler>> dependencies = new ConcurrentHashMap<>();
   /** This lock is used to linearize all calls to Handler.start() and Handler.stop() on the managed handlers. */
   private final Lock startStopLock = new ReentrantLock();
   private final AtomicReference<State> state = new AtomicReference<>(State.NOT_STARTED);
   private Stage currStage = null;
   private final AtomicBoolean shutdownHookRegistered = new AtomicBoolean(false);
   private final String name;
+  private int startParallelism = 1;
+  private long stopTimeoutNanos = 0;
+  private long stopHandlerTimeoutNanos = 0;
+  /** Handlers started so far by a parallel {@link #start()}, in completion order. Only set while it is running. */
+  private volatile Deque<Handler> parallelStarted = null;
+  private final StartupProfiler startupProfiler = new StartupProfiler();
+  /** Guarded by startStopLock, like the other settings below. */
+  private final Map<String, Runnable> warmupTasks = new LinkedHashMap<>();
+  private final Map<String, BooleanSupplier> readinessChecks = new LinkedHashMap<>();
+  private long warmupBudgetNanos = TimeUnit.MINUTES.toNanos(1);
+  private long readinessTimeoutNanos = TimeUnit.MINUTES.toNanos(5);
+  private File startupReportFile = null;
 
   public Lifecycle()
   {
@@ -122,7 +222,7 @@ public class Lifecycle
    */
   public <T> T addManagedInstance(T o)
   {
-    addHandler(new AnnotationBasedHandler(o));
+    addHandler(managedHandler(o));
     return o;
   }
 
@@ -137,10 +237,28 @@ public class Lifecycle
    */
   public <T> T addManagedInstance(T o, Stage stage)
   {
-    addHandler(new AnnotationBasedHandler(o), stage);
+    addHandler(managedHandler(o), stage);
     return o;
   }
 
+  /**
+   * Returns the handler generated by {@link LifecycleHandlerProcessor} for the class of the given managed instance, or
+   * one finding its {@link LifecycleStart} and {@link LifecycleStop} methods by reflection if there is none.
+   */
+  private static Handler managedHandler(Object o)
+  {
+    final Optional<MethodHandle> generated = GENERATED_HANDLERS.get(o.getClass());
+    if (!generated.isPresent()) {
+      return new AnnotationBasedHandler(o);
+    }
+    try {
+      return (Handler) generated.get().invoke(o);
+    }
+    catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+  }
+
   /**
    * Adds an instance with a start() and/or close() method to the Lifecycle at Stage.NORMAL.  If the lifecycle has
    * already been started, it throws an {@link ISE}
@@ -207,6 +325,230 @@ public class Lifecycle
     }
   }
 
+  /**
+   * Adds a handler to the Lifecycle that, when the Lifecycle is started in parallel, is only started once all of the
+   * given dependencies have been started, and that is stopped before them when a stop timeout is set.  Dependencies
+   * must already have been added to this Lifecycle at the same or an earlier stage, which keeps the declared
+   * dependencies free of cycles.  If the lifecycle has already been started, it throws an {@link ISE}
+   *
+   * @param handler      The hander to add to the lifecycle
+   * @param stage        The stage to add the lifecycle at
+   * @param dependencies The handlers which must be started before this one
+   *
+   * @throws ISE indicates that the lifecycle has already been started or that a dependency is not registered at the
+   *             same or an earlier stage
+   */
+  public void addHandler(Handler handler, Stage stage, Handler... dependencies)
+  {
+    if (!startStopLock.tryLock()) {
+      throw new ISE("Cannot add a handler in the process of Lifecycle starting or stopping");
+    }
+    try {
+      if (!state.get().equals(State.NOT_STARTED)) {
+        throw new ISE("Cannot add a handler after the Lifecycle has started, it doesn't work that way.");
+      }
+      for (Handler dependency : dependencies) {
+        final Stage dependencyStage = findStage(dependency);
+        if (dependencyStage == null || dependencyStage.compareTo(stage) > 0) {
+          throw new ISE("Dependency [%s] of [%s] must be added at stage [%s] or earlier", dependency, handler, stage);
+        }
+      }
+      handlers.get(stage).add(handler);
+      if (dependencies.length > 0) {
+        this.dependencies.put(handler, ImmutableList.copyOf(dependencies));
+      }
+    }
+    finally {
+      startStopLock.unlock();
+    }
+  }
+
+  /**
+   * Adds an {@link AsyncHandler} to the Lifecycle.  Its start is initiated in turn like any other handler's, but the
+   * Lifecycle only waits for it to complete before starting a handler depending on it and before moving on to the next
+   * stage.  If the lifecycle has already been started, it throws an {@link ISE}
+   *
+   * @param handler      The hander to add to the lifecycle
+   * @param stage        The stage to add the lifecycle at
+   * @param dependencies The handlers which must be started before this one
+   *
+   * @return the handler registered for the given one, for other handlers to depend on
+   *
+   * @throws ISE see {@link #addHandler(Handler, Stage, Handler...)}
+   */
+  public Handler addAsyncHandler(AsyncHandler handler, Stage stage, Handler... dependencies)
+  {
+    final Handler registered = new AsyncHandlerAdapter(handler);
+    addHandler(registered, stage, dependencies);
+    return registered;
+  }
+
+  /**
+   * Adds an {@link AsyncHandler} to the Lifecycle and, if the lifecycle has already been started, starts it and waits
+   * for its start to complete.
+   *
+   * @param handler The hander to add to the lifecycle
+   * @param stage   The stage to add the lifecycle at
+   *
+   * @return the handler registered for the given one
+   *
+   * @throws Exception {@link Lifecycle#addMaybeStartHandler(Handler, Stage)}
+   */
+  public Handler addMaybeStartAsyncHandler(AsyncHandler handler, Stage stage) throws Exception
+  {
+    final Handler registered = new AsyncHandlerAdapter(handler);
+    addMaybeStartHandler(registered, stage);
+    return registered;
+  }
+
+  private Stage findStage(Handler handler)
+  {
+    for (Map.Entry<Stage, CopyOnWriteArrayList<Handler>> e : handlers.entrySet()) {
+      if (e.getValue().contains(handler)) {
+        return e.getKey();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Starts the handlers of each stage on a pool of {@code parallelism} threads instead of one after another.  A handler
+   * added with dependencies is only started once they have all started.  If any handler fails to start, the handlers of
+   * the stage not yet started are skipped, every handler already started is stopped in reverse completion order and the
+   * Lifecycle is left stopped.
+   *
+   * @param parallelism The number of threads starting handlers, 1 to start them serially
+   *
+   * @throws ISE indicates that the lifecycle has already been started
+   */
+  public void setStartParallelism(int parallelism)
+  {
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+    startStopLock.lock();
+    try {
+      if (!state.get().equals(State.NOT_STARTED)) {
+        throw new ISE("Cannot change the start parallelism after the Lifecycle has started");
+      }
+      this.startParallelism = parallelism;
+    }
+    finally {
+      startStopLock.unlock();
+    }
+  }
+
+  /**
+   * Bounds the time {@link #stop()} may take.  With a stop timeout set, the handlers of a stage are stopped in parallel,
+   * except that a handler is only stopped after the handlers of the same stage which depend on it.  A handler which
+   * does not stop within {@code handlerTimeout} is reported and no longer waited for.  Once {@code timeout} has elapsed,
+   * the remaining handlers are abandoned and the stacks of the stuck stop threads are logged.
+   *
+   * @param timeout        The maximum time stop() may take, 0 to stop the handlers serially without any timeout
+   * @param handlerTimeout The maximum time to wait for a single handler to stop
+   * @param unit           The unit of both timeouts
+   */
+  public void setStopTimeout(long timeout, long handlerTimeout, TimeUnit unit)
+  {
+    Preconditions.checkArgument(timeout >= 0, "timeout must not be negative");
+    Preconditions.checkArgument(handlerTimeout > 0, "handlerTimeout must be positive");
+    startStopLock.lock();
+    try {
+      this.stopTimeoutNanos = unit.toNanos(timeout);
+      this.stopHandlerTimeoutNanos = unit.toNanos(handlerTimeout);
+    }
+    finally {
+      startStopLock.unlock();
+    }
+  }
+
+  /**
+   * Adds a task run once the handlers of {@link Stage#WARMUP} have started, for instance replaying sample requests so
+   * that the JIT compiles the request path before the server starts.  Warmup tasks run in parallel, are abandoned once
+   * the warmup budget is spent, and their failures are logged without failing the start.  If the lifecycle has already
+   * been started, it throws an {@link ISE}
+   *
+   * @param taskName The name of the task, unique within this lifecycle
+   * @param task     The task to run
+   */
+  public void addWarmupTask(String taskName, Runnable task)
+  {
+    addBeforeStart("warmup task", taskName, task, warmupTasks);
+  }
+
+  /**
+   * Adds a check which must pass before the lifecycle moves from {@link Stage#WARMUP} to {@link Stage#SERVER}.  Checks
+   * are polled after the warmup tasks have run, until all of them have passed once or the readiness timeout elapses,
+   * which fails the start.  A check throwing an exception is considered not ready.  If the lifecycle has already been
+   * started, it throws an {@link ISE}
+   *
+   * @param checkName The name of the check, unique within this lifecycle
+   * @param check     Returns whether the process is ready as far as this check is concerned
+   */
+  public void addReadinessCheck(String checkName, BooleanSupplier check)
+  {
+    addBeforeStart("readiness check", checkName, check, readinessChecks);
+  }
+
+  private <T> void addBeforeStart(String kind, String key, T value, Map<String, T> map)
+  {
+    Preconditions.checkNotNull(value, kind);
+    if (!startStopLock.tryLock()) {
+      throw new ISE("Cannot add a %s in the process of Lifecycle starting or stopping", kind);
+    }
+    try {
+      if (!state.get().equals(State.NOT_STARTED)) {
+        throw new ISE("Cannot add a %s after the Lifecycle has started", kind);
+      }
+      if (map.putIfAbsent(key, value) != null) {
+        throw new ISE("Duplicate %s [%s]", kind, key);
+      }
+    }
+    finally {
+      startStopLock.unlock();
+    }
+  }
+
+  /**
+   * Bounds the time spent in {@link Stage#WARMUP} after its handlers have started.  Defaults to 1 minute for the warmup
+   * tasks and 5 minutes for the readiness checks.
+   *
+   * @param budget           The time the warmup tasks may take, after which the remaining ones are interrupted
+   * @param readinessTimeout The time the readiness checks may take to pass after the warmup tasks are done
+   * @param unit             The unit of both durations
+   */
+  public void setWarmup(long budget, long readinessTimeout, TimeUnit unit)
+  {
+    Preconditions.checkArgument(budget >= 0, "budget must not be negative");
+    Preconditions.checkArgument(readinessTimeout >= 0, "readinessTimeout must not be negative");
+    startStopLock.lock();
+    try {
+      this.warmupBudgetNanos = unit.toNanos(budget);
+      this.readinessTimeoutNanos = unit.toNanos(readinessTimeout);
+    }
+    finally {
+      startStopLock.unlock();
+    }
+  }
+
+  /**
+   * Sets the file the JSON startup report is written to once start() succeeds, null not to write it.  See
+   * {@link StartupProfiler#toJson(String)}.
+   */
+  public void setStartupReportFile(File startupReportFile)
+  {
+    startStopLock.lock();
+    try {
+      this.startupReportFile = startupReportFile;
+    }
+    finally {
+      startStopLock.unlock();
+    }
+  }
+
+  public StartupProfiler getStartupProfiler()
+  {
+    return startupProfiler;
+  }
+
   /**
    * Adds a "managed" instance (annotated with {@link LifecycleStart} and {@link LifecycleStop}) to the Lifecycle at
    * Stage.NORMAL and starts it if the lifecycle has already been started.
@@ -217,7 +559,7 @@ public class Lifecycle
    */
   public <T> T addMaybeStartManagedInstance(T o) throws Exception
   {
-    addMaybeStartHandler(new AnnotationBasedHandler(o));
+    addMaybeStartHandler(managedHandler(o));
     return o;
   }
 
@@ -232,7 +574,7 @@ public class Lifecycle
    */
   public <T> T addMaybeStartManagedInstance(T o, Stage stage) throws Exception
   {
-    addMaybeStartHandler(new AnnotationBasedHandler(o), stage);
+    addMaybeStartHandler(managedHandler(o), stage);
     return o;
   }
 
@@ -297,6 +639,15 @@ public class Lifecycle
    */
   public void addMaybeStartHandler(Handler handler, Stage stage) throws Exception
   {
+    if (PARALLEL_START_WORKER.get() == this) {
+      // The thread in start() holds startStopLock while it waits for this one, so taking the lock would deadlock.
+      if (stage.compareTo(currStage) <= 0) {
+        handler.start();
+        parallelStarted.add(handler);
+      }
+      handlers.get(stage).add(handler);
+      return;
+    }
     if (!startStopLock.tryLock()) {
       // (*) This check is why the state should be changed before startStopLock.lock() in stop(). This check allows to
       // spot wrong use of Lifecycle instead of entering deadlock, like https://github.com/apache/incubator-druid/issues/3579.
@@ -331,20 +682,333 @@ public class Lifecycle
       if (!state.compareAndSet(State.NOT_STARTED, State.RUNNING)) {
         throw new ISE("stop() is called concurrently with start()");
       }
-      for (Map.Entry<Stage, ? extends List<Handler>> e : handlers.entrySet()) {
-        currStage = e.getKey();
-        log.info("Starting lifecycle [{}] stage [{}]", name, currStage.name());
-        for (Handler handler : e.getValue()) {
-          handler.start();
+      startupProfiler.begin();
+      if (startParallelism > 1) {
+        startInParallel();
+      } else {
+        for (Map.Entry<Stage, ? extends List<Handler>> e : handlers.entrySet()) {
+          currStage = e.getKey();
+          log.info("Starting lifecycle [{}] stage [{}]", name, currStage.name());
+          final Map<Handler, CompletableFuture<Void>> starting = new IdentityHashMap<>();
+          Handler previous = null;
+          for (Handler handler : e.getValue()) {
+            // Dependencies have been initiated before, but asynchronous ones may not have completed yet.
+            for (Handler dependency : dependencies.getOrDefault(handler, Collections.emptyList())) {
+              final CompletableFuture<Void> dependencyStarted = starting.get(dependency);
+              if (dependencyStarted != null) {
+                await(dependencyStarted);
+              }
+            }
+            starting.put(
+                handler,
+                startProfiled(
+                    currStage,
+                    handler,
+                    previous == null ? Collections.emptyList() : Collections.singletonList(previous)
+                )
+            );
+            previous = handler;
+          }
+          for (CompletableFuture<Void> started : starting.values()) {
+            await(started);
+          }
+          if (currStage == Stage.WARMUP) {
+            warmUp();
+          }
         }
       }
+      startupProfiler.finish();
       log.info("Successfully started lifecycle [{}]", name);
+      reportStartup();
     }
     finally {
       startStopLock.unlock();
     }
   }
 
+  private void startInParallel() throws Exception
+  {
+    final ExecutorService exec = Executors.newFixedThreadPool(
+        startParallelism,
+        new ThreadFactoryBuilder().setDaemon(true)
+                                  .setNameFormat("Lifecycle-" + name.replace("%", "%%") + "-start-%d")
+                                  .build()
+    );
+    final Deque<Handler> started = new ConcurrentLinkedDeque<>();
+    parallelStarted = started;
+    try {
+      for (Map.Entry<Stage, ? extends List<Handler>> e : handlers.entrySet()) {
+        currStage = e.getKey();
+        log.info("Starting lifecycle [{}] stage [{}] with parallelism [{}]", name, currStage.name(), startParallelism);
+        startStageInParallel(currStage, e.getValue(), exec, started);
+        if (currStage == Stage.WARMUP) {
+          warmUp();
+        }
+      }
+    }
+    catch (Throwable t) {
+      exec.shutdownNow();
+      state.set(State.STOP);
+      log.error("Lifecycle [{}] failed to start, stopping [{}] started handlers", name, started.size());
+      for (Iterator<Handler> it = started.descendingIterator(); it.hasNext(); ) {
+        final Handler handler = it.next();
+        try {
+          handler.stop();
+        }
+        catch (RuntimeException e) {
+          log.warn("Lifecycle [{}] encountered exception while stopping {}", name, handler, e);
+        }
+      }
+      throw t;
+    }
+    finally {
+      parallelStarted = null;
+      exec.shutdownNow();
+    }
+  }
+
+  /**
+   * Starts the given handlers on the executor, each one as soon as its dependencies in the same stage have started, and
+   * waits until all of them are done.  Once a handler fails, the handlers which have not started yet are skipped.
+   */
+  private void startStageInParallel(
+      Stage stage,
+      List<Handler> stageHandlers,
+      ExecutorService exec,
+      Deque<Handler> started
+  ) throws Exception
+  {
+    final Map<Handler, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    for (final Handler handler : stageHandlers) {
+      final List<CompletableFuture<Void>> upstream = new ArrayList<>();
+      for (Handler dependency : dependencies.getOrDefault(handler, Collections.emptyList())) {
+        // Dependencies added at an earlier stage are not in the map, they have already started.
+        final CompletableFuture<Void> dependencyFuture = futures.get(dependency);
+        if (dependencyFuture != null) {
+          upstream.add(dependencyFuture);
+        }
+      }
+      final CompletableFuture<Void> future = CompletableFuture
+          .allOf(upstream.toArray(new CompletableFuture[0]))
+          .thenComposeAsync(
+              ignored -> {
+                if (failure.get() != null) {
+                  throw new CancellationException();
+                }
+                PARALLEL_START_WORKER.set(this);
+                try {
+                  return startProfiled(stage, handler, dependencies.getOrDefault(handler, Collections.emptyList()));
+                }
+                catch (Exception e) {
+                  throw new CompletionException(e);
+                }
+                finally {
+                  PARALLEL_START_WORKER.remove();
+                }
+              },
+              exec
+          )
+          .thenRun(() -> started.add(handler))
+          .whenComplete(
+              (ignored, t) -> {
+                if (t != null) {
+                  failure.compareAndSet(null, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                }
+              }
+          );
+      futures.put(handler, future);
+    }
+
+    try {
+      CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).get();
+    }
+    catch (ExecutionException e) {
+      // The first failure is rethrown below, the others are consequences of it.
+    }
+    final Throwable t = failure.get();
+    if (t != null) {
+      Throwables.propagateIfPossible(t, Exception.class);
+      throw new RuntimeException(t);
+    }
+  }
+
+  /**
+   * Runs the warmup tasks within the warmup budget, then waits for the readiness checks to pass.
+   *
+   * @throws ISE if the readiness checks didn't pass in time
+   */
+  private void warmUp() throws InterruptedException
+  {
+    if (!warmupTasks.isEmpty()) {
+      log.info(
+          "Running [{}] warmup tasks of lifecycle [{}] with a budget of [{}] ms",
+          warmupTasks.size(),
+          name,
+          TimeUnit.NANOSECONDS.toMillis(warmupBudgetNanos)
+      );
+      final ExecutorService exec = Executors.newFixedThreadPool(
+          warmupTasks.size(),
+          new ThreadFactoryBuilder().setDaemon(true)
+                                    .setNameFormat("Lifecycle-" + name.replace("%", "%%") + "-warmup-%d")
+                                    .build()
+      );
+      try {
+        final Map<String, Future<?>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Runnable> task : warmupTasks.entrySet()) {
+          futures.put(task.getKey(), exec.submit(() -> runWarmupTask(task.getKey(), task.getValue())));
+        }
+        final long deadline = System.nanoTime() + warmupBudgetNanos;
+        for (Map.Entry<String, Future<?>> e : futures.entrySet()) {
+          try {
+            e.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+          }
+          catch (TimeoutException ex) {
+            log.warn("Warmup task [{}] of lifecycle [{}] exceeded the warmup budget, interrupting it", e.getKey(), name);
+            e.getValue().cancel(true);
+          }
+          catch (ExecutionException ex) {
+            log.warn("Warmup task [{}] of lifecycle [{}] failed", e.getKey(), name, ex.getCause());
+          }
+        }
+      }
+      finally {
+        exec.shutdownNow();
+      }
+    }
+
+    if (!readinessChecks.isEmpty()) {
+      final long deadline = System.nanoTime() + readinessTimeoutNanos;
+      final Set<String> pending = new LinkedHashSet<>(readinessChecks.keySet());
+      while (true) {
+        pending.removeIf(checkName -> isReady(checkName, readinessChecks.get(checkName)));
+        if (pending.isEmpty()) {
+          break;
+        }
+        if (System.nanoTime() - deadline >= 0) {
+          throw new ISE(
+              "Readiness checks %s of lifecycle [%s] did not pass within [%,d] ms",
+              pending,
+              name,
+              TimeUnit.NANOSECONDS.toMillis(readinessTimeoutNanos)
+          );
+        }
+        Thread.sleep(READINESS_POLL_MILLIS);
+      }
+      log.info("Lifecycle [{}] passed [{}] readiness checks", name, readinessChecks.size());
+    }
+  }
+
+  private void runWarmupTask(String taskName, Runnable task)
+  {
+    final long startCpuNanos = JvmUtils.safeGetThreadCpuTime();
+    final long startNanos = System.nanoTime();
+    task.run();
+    startupProfiler.record(
+        Stage.WARMUP.name(),
+        taskName,
+        Collections.emptyList(),
+        startNanos,
+        System.nanoTime(),
+        JvmUtils.safeGetThreadCpuTime() - startCpuNanos
+    );
+  }
+
+  private boolean isReady(String checkName, BooleanSupplier check)
+  {
+    try {
+      return check.getAsBoolean();
+    }
+    catch (RuntimeException e) {
+      log.debug("Readiness check [{}] of lifecycle [{}] failed", checkName, name, e);
+      return false;
+    }
+  }
+
+  /**
+   * Starts the handler, recording the time it takes in the startup profile.  Asynchronous handlers are only initiated,
+   * the returned future completes once their start has completed, other handlers have started when this returns.
+   *
+   * @param predecessors The handlers of the same stage which had to be started before this one
+   */
+  private CompletableFuture<Void> startProfiled(Stage stage, Handler handler, Collection<Handler> predecessors)
+      throws Exception
+  {
+    final long startCpuNanos = JvmUtils.safeGetThreadCpuTime();
+    final long startNanos = System.nanoTime();
+    final CompletableFuture<Void> started;
+    if (handler instanceof AsyncHandlerAdapter) {
+      started = ((AsyncHandlerAdapter) handler).handler.start();
+    } else {
+      handler.start();
+      started = CompletableFuture.completedFuture(null);
+    }
+    // Only the CPU time of this thread is known, not the one spent completing an asynchronous start.
+    final long cpuNanos = JvmUtils.safeGetThreadCpuTime() - startCpuNanos;
+    return started.whenComplete(
+        (ignored, t) -> {
+          if (t == null) {
+            startupProfiler.record(stage.name(), handler, predecessors, startNanos, System.nanoTime(), cpuNanos);
+          }
+        }
+    );
+  }
+
+  /**
+   * Initiates the stop of the handler, the returned future completes once an asynchronous handler has stopped.
+   */
+  private static CompletableFuture<Void> stopAsync(Handler handler)
+  {
+    if (handler instanceof AsyncHandlerAdapter) {
+      return ((AsyncHandlerAdapter) handler).handler.stop();
+    }
+    handler.stop();
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Waits for the stop initiated by {@link #stopAsync(Handler)} to complete.
+   *
+   * @return the exception the stop failed with, null if it succeeded
+   */
+  private RuntimeException awaitStop(Handler handler, CompletableFuture<Void> stopped)
+  {
+    try {
+      stopped.join();
+      return null;
+    }
+    catch (CompletionException | CancellationException e) {
+      final RuntimeException thrown = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      log.warn("Lifecycle [{}] encountered exception while stopping {}", name, handler, thrown);
+      return thrown;
+    }
+  }
+
+  private static void await(CompletableFuture<Void> future) throws Exception
+  {
+    try {
+      future.get();
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), Exception.class);
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private void reportStartup()
+  {
+    startupProfiler.logReport(name);
+    if (startupReportFile != null) {
+      try {
+        Files.write(startupReportFile.toPath(), startupProfiler.toJson(name).getBytes(StandardCharsets.UTF_8));
+      }
+      catch (IOException e) {
+        // The report is informational, failing to write it must not fail the start.
+        log.warn("Unable to write the startup report of lifecycle [{}] to [{}]", name, startupReportFile, e);
+      }
+    }
+  }
+
   public void stop()
   {
     // This CAS outside of a block guarded by startStopLock is the only reason why state is AtomicReference rather than
@@ -356,13 +1020,29 @@ public class Lifecycle
     }
     startStopLock.lock();
     try {
+      if (stopTimeoutNanos > 0) {
+        stopWithDeadline();
+        return;
+      }
+
       RuntimeException thrown = null;
 
       for (Stage s : handlers.navigableKeySet().descendingSet()) {
         log.info("Stopping lifecycle [{}] stage [{}]", name, s.name());
+        final Map<Handler, CompletableFuture<Void>> stopping = new IdentityHashMap<>();
         for (Handler handler : Lists.reverse(handlers.get(s))) {
+          // The handlers depending on this one may still be stopping asynchronously.
+          final Iterator<Map.Entry<Handler, CompletableFuture<Void>>> it = stopping.entrySet().iterator();
+          while (it.hasNext()) {
+            final Map.Entry<Handler, CompletableFuture<Void>> dependent = it.next();
+            if (dependencies.getOrDefault(dependent.getKey(), Collections.emptyList()).contains(handler)) {
+              final RuntimeException e = awaitStop(dependent.getKey(), dependent.getValue());
+              thrown = thrown == null ? e : thrown;
+              it.remove();
+            }
+          }
           try {
-            handler.stop();
+            stopping.put(handler, stopAsync(handler));
           }
           catch (RuntimeException e) {
             log.warn("Lifecycle [{}] encountered exception while stopping {}", name, handler, e);
@@ -371,6 +1051,10 @@ public class Lifecycle
             }
           }
         }
+        for (Map.Entry<Handler, CompletableFuture<Void>> e : stopping.entrySet()) {
+          final RuntimeException stopFailure = awaitStop(e.getKey(), e.getValue());
+          thrown = thrown == null ? stopFailure : thrown;
+        }
       }
 
       if (thrown != null) {
@@ -382,6 +1066,133 @@ public class Lifecycle
     }
   }
 
+  /**
+   * Stops the handlers of each stage in parallel, a handler being stopped only after the handlers of the same stage
+   * which depend on it, see {@link #addHandler(Handler, Stage, Handler...)}.  Handlers exceeding the per-handler timeout
+   * are reported and no longer waited for.  Once the global deadline is reached, the remaining handlers are abandoned
+   * and the stack of every stop thread still running is logged.
+   */
+  private void stopWithDeadline()
+  {
+    final long deadline = System.nanoTime() + stopTimeoutNanos;
+    final ExecutorService exec = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setDaemon(true)
+                                  .setNameFormat("Lifecycle-" + name.replace("%", "%%") + "-stop-%d")
+                                  .build()
+    );
+    final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setDaemon(true)
+                                  .setNameFormat("Lifecycle-" + name.replace("%", "%%") + "-stop-timer")
+                                  .build()
+    );
+    final Map<Handler, Thread> running = new ConcurrentHashMap<>();
+    final List<Handler> overran = new CopyOnWriteArrayList<>();
+    final AtomicReference<RuntimeException> thrown = new AtomicReference<>();
+    boolean deadlineReached = false;
+
+    try {
+      for (Stage s : handlers.navigableKeySet().descendingSet()) {
+        log.info("Stopping lifecycle [{}] stage [{}]", name, s.name());
+        final List<Handler> stageHandlers = handlers.get(s);
+        final Map<Handler, List<Handler>> dependents = new IdentityHashMap<>();
+        for (Handler handler : stageHandlers) {
+          for (Handler dependency : dependencies.getOrDefault(handler, Collections.emptyList())) {
+            dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(handler);
+          }
+        }
+
+        // Dependents are always added after their dependencies, so walking backwards visits them first.
+        final Map<Handler, CompletableFuture<Void>> settled = new IdentityHashMap<>();
+        for (final Handler handler : Lists.reverse(stageHandlers)) {
+          final List<CompletableFuture<Void>> upstream = new ArrayList<>();
+          for (Handler dependent : dependents.getOrDefault(handler, Collections.emptyList())) {
+            upstream.add(settled.get(dependent));
+          }
+          final CompletableFuture<Void> handlerSettled = new CompletableFuture<>();
+          CompletableFuture.allOf(upstream.toArray(new CompletableFuture[0])).thenRunAsync(
+              () -> {
+                running.put(handler, Thread.currentThread());
+                final ScheduledFuture<?> watchdog = timer.schedule(
+                    () -> {
+                      if (handlerSettled.complete(null)) {
+                        overran.add(handler);
+                        log.warn(
+                            "Lifecycle [{}] handler [{}] did not stop within [{}] ms, no longer waiting for it",
+                            name,
+                            handler,
+                            TimeUnit.NANOSECONDS.toMillis(stopHandlerTimeoutNanos)
+                        );
+                      }
+                    },
+                    stopHandlerTimeoutNanos,
+                    TimeUnit.NANOSECONDS
+                );
+                try {
+                  handler.stop();
+                }
+                catch (RuntimeException e) {
+                  log.warn("Lifecycle [{}] encountered exception while stopping {}", name, handler, e);
+                  thrown.compareAndSet(null, e);
+                }
+                finally {
+                  running.remove(handler);
+                  watchdog.cancel(false);
+                  handlerSettled.complete(null);
+                }
+              },
+              exec
+          );
+          settled.put(handler, handlerSettled);
+        }
+
+        try {
+          CompletableFuture.allOf(settled.values().toArray(new CompletableFuture[0]))
+                           .get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+          deadlineReached = true;
+          break;
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          deadlineReached = true;
+          break;
+        }
+        catch (ExecutionException e) {
+          // Cannot happen, the futures are only ever completed normally.
+          throw new RuntimeException(e);
+        }
+      }
+
+      if (!overran.isEmpty()) {
+        log.warn("Lifecycle [{}] handlers which overran their stop timeout: {}", name, overran);
+      }
+      if (deadlineReached) {
+        final StringBuilder dump = new StringBuilder();
+        for (Map.Entry<Handler, Thread> e : running.entrySet()) {
+          dump.append("\nStopping [").append(e.getKey()).append("] in ").append(e.getValue());
+          for (StackTraceElement element : e.getValue().getStackTrace()) {
+            dump.append("\n\tat ").append(element);
+          }
+        }
+        log.error(
+            "Lifecycle [{}] did not stop within [{}] ms, abandoning the remaining handlers. Stuck stop threads:{}",
+            name,
+            TimeUnit.NANOSECONDS.toMillis(stopTimeoutNanos),
+            dump
+        );
+      }
+    }
+    finally {
+      exec.shutdownNow();
+      timer.shutdownNow();
+    }
+
+    if (thrown.get() != null) {
+      throw thrown.get();
+    }
+  }
+
   public void ensureShutdownHook()
   {
     if (shutdownHookRegistered.compareAndSet(false, true)) {
@@ -414,6 +1225,57 @@ public class Lifecycle
     void stop();
   }
 
+  /**
+   * A handler whose start and stop are initiated by the calls and complete with the returned futures, so that
+   * components which are naturally asynchronous don't block a lifecycle thread while they start or stop.  See
+   * {@link #addAsyncHandler(AsyncHandler, Stage, Handler...)}.
+   */
+  public interface AsyncHandler
+  {
+    CompletableFuture<Void> start();
+
+    CompletableFuture<Void> stop();
+  }
+
+  /**
+   * Registers an {@link AsyncHandler} among the other handlers.  start() and stop() block until the asynchronous
+   * operation completes, which is what callers unaware of asynchronous handlers expect, start() and stop() of the
+   * Lifecycle itself call the {@link AsyncHandler} directly.
+   */
+  private static class AsyncHandlerAdapter implements Handler
+  {
+    private final AsyncHandler handler;
+
+    AsyncHandlerAdapter(AsyncHandler handler)
+    {
+      this.handler = handler;
+    }
+
+    @Override
+    public void start() throws Exception
+    {
+      await(handler.start());
+    }
+
+    @Override
+    public void stop()
+    {
+      try {
+        handler.stop().join();
+      }
+      catch (CompletionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw e;
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return handler.toString();
+    }
+  }
+
   @Slf4j
   private static class AnnotationBasedHandler implements Handler
   {
@@ -427,43 +1289,107 @@ public class Lifecycle
     @Override
     public void start() throws Exception
     {
-      for (Method method : o.getClass().getMethods()) {
-        boolean doStart = false;
-        for (Annotation annotation : method.getAnnotations()) {
-          if (LifecycleStart.class.getName().equals(annotation.annotationType().getName())) {
-            doStart = true;
-            break;
-          }
+      final LifecycleMethods methods = LifecycleMethods.of(o.getClass());
+      for (int i = 0; i < methods.startMethods.size(); i++) {
+        log.info("Invoking start method[{}] on object[{}].", methods.startMethods.get(i), o);
+        LifecycleMethods.invoke(methods.startHandles.get(i), o);
+      }
+    }
+
+    @Override
+    public void stop()
+    {
+      final LifecycleMethods methods = LifecycleMethods.of(o.getClass());
+      for (int i = 0; i < methods.stopMethods.size(); i++) {
+        final Method method = methods.stopMethods.get(i);
+        log.info("Invoking stop method[{}] on object[{}].", method, o);
+        try {
+          LifecycleMethods.invoke(methods.stopHandles.get(i), o);
         }
-        if (doStart) {
-          log.info("Invoking start method[{}] on object[{}].", method, o);
-          method.invoke(o);
+        catch (Exception e) {
+          log.error("Exception when stopping method[{}] on object[{}]", method, o, e);
         }
       }
     }
 
     @Override
-    public void stop()
+    public String toString()
+    {
+      return o.getClass().getName();
+    }
+  }
+
+  /**
+   * The {@link LifecycleStart} and {@link LifecycleStop} methods of a class, looked up once per class and kept as
+   * {@link MethodHandle}s so that starting and stopping instances doesn't scan their methods again.
+   */
+  private static class LifecycleMethods
+  {
+    private static final ClassValue<LifecycleMethods> CACHE = new ClassValue<LifecycleMethods>()
+    {
+      @Override
+      protected LifecycleMethods computeValue(Class<?> type)
+      {
+        return new LifecycleMethods(type);
+      }
+    };
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class);
+
+    private final List<Method> startMethods = new ArrayList<>();
+    private final List<MethodHandle> startHandles = new ArrayList<>();
+    private final List<Method> stopMethods = new ArrayList<>();
+    private final List<MethodHandle> stopHandles = new ArrayList<>();
+
+    static LifecycleMethods of(Class<?> clazz)
     {
-      for (Method method : o.getClass().getMethods()) {
+      return CACHE.get(clazz);
+    }
+
+    private LifecycleMethods(Class<?> clazz)
+    {
+      for (Method method : clazz.getMethods()) {
+        boolean doStart = false;
         boolean doStop = false;
         for (Annotation annotation : method.getAnnotations()) {
-          if (LifecycleStop.class.getName().equals(annotation.annotationType().getName())) {
-            doStop = true;
-            break;
-          }
+          // Annotations are compared by name so that copies of them loaded by another class loader match as well.
+          final String annotationName = annotation.annotationType().getName();
+          doStart |= LifecycleStart.class.getName().equals(annotationName);
+          doStop |= LifecycleStop.class.getName().equals(annotationName);
+        }
+        if (doStart) {
+          startMethods.add(method);
+          startHandles.add(unreflect(method));
         }
         if (doStop) {
-          log.info("Invoking stop method[{}] on object[{}].", method, o);
-          try {
-            method.invoke(o);
-          }
-          catch (Exception e) {
-            log.error("Exception when stopping method[{}] on object[{}]", method, o, e);
-          }
+          stopMethods.add(method);
+          stopHandles.add(unreflect(method));
         }
       }
     }
+
+    private static MethodHandle unreflect(Method method)
+    {
+      try {
+        // The method is public, but its class might not be accessible from here.
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method).asType(INVOKER_TYPE);
+      }
+      catch (IllegalAccessException | SecurityException e) {
+        throw new ISE(e, "Cannot access lifecycle method[%s]", method);
+      }
+    }
+
+    static void invoke(MethodHandle handle, Object o) throws Exception
+    {
+      try {
+        handle.invokeExact(o);
+      }
+      catch (Throwable t) {
+        Throwables.propagateIfPossible(t, Exception.class);
+        throw new RuntimeException(t);
+      }
+    }
   }
 
   @Slf4j
@@ -504,6 +1430,12 @@ public class Lifecycle
         log.error("Unable to invoke stopMethod() on {}", o.getClass(), e);
       }
     }
+
+    @Override
+    public String toString()
+    {
+      return o.getClass().getName();
+    }
   }
 
   @Slf4j
@@ -533,5 +1465,11 @@ public class Lifecycle
         log.error("Exception when closing object [{}]", o, e);
       }
     }
+
+    @Override
+    public String toString()
+    {
+      return o.getClass().getName();
+    }
   }
 }
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.lifecycle;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates a {@link Lifecycle.Handler} for every class with {@link LifecycleStart} or {@link LifecycleStop} methods or
+ * annotated with one of the ManageLifecycle scopes.  The generated handler calls the lifecycle methods directly and is
+ * used by {@link Lifecycle#addManagedInstance(Object)} instead of looking the methods up by reflection.
+ *
+ * The handler of {@code com.example.Outer$Inner} is {@code com.example.Outer$Inner$$LifecycleHandler}.  Only exact
+ * classes are matched, instances of a subclass without a generated handler of its own are handled by reflection.
+ *
+ * The processor is registered as a service, so it runs whenever guice-lifecycle is on the compile classpath.
+ */
+public class LifecycleHandlerProcessor extends AbstractProcessor
+{
+  static final String HANDLER_SUFFIX = "$$LifecycleHandler";
+
+  private static final Set<Class<? extends Annotation>> METHOD_ANNOTATIONS = ImmutableSet.of(
+      LifecycleStart.class,
+      LifecycleStop.class
+  );
+  private static final Set<Class<? extends Annotation>> TYPE_ANNOTATIONS = ImmutableSet.of(
+      ManageLifecycleInit.class,
+      ManageLifecycle.class,
+      ManageLifecycleWarmup.class,
+      ManageLifecycleServer.class,
+      ManageLifecycleAnnouncements.class
+  );
+
+  private final Set<String> generated = new HashSet<>();
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes()
+  {
+    final Set<String> names = new HashSet<>();
+    for (Class<? extends Annotation> annotation : METHOD_ANNOTATIONS) {
+      names.add(annotation.getName());
+    }
+    for (Class<? extends Annotation> annotation : TYPE_ANNOTATIONS) {
+      names.add(annotation.getName());
+    }
+    return names;
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion()
+  {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+  {
+    final Set<TypeElement> types = new HashSet<>();
+    for (Class<? extends Annotation> annotation : METHOD_ANNOTATIONS) {
+      for (Element method : roundEnv.getElementsAnnotatedWith(annotation)) {
+        types.add((TypeElement) method.getEnclosingElement());
+      }
+    }
+    for (Class<? extends Annotation> annotation : TYPE_ANNOTATIONS) {
+      // The scope annotations may also be put on @Provides methods, there is nothing to generate for those.
+      types.addAll(ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation)));
+    }
+
+    for (TypeElement type : types) {
+      if (isSupported(type) && generated.add(type.getQualifiedName().toString())) {
+        try {
+          generate(type);
+        }
+        catch (IOException e) {
+          processingEnv.getMessager().printMessage(
+              Diagnostic.Kind.ERROR,
+              "Unable to generate lifecycle handler: " + e.getMessage(),
+              type
+          );
+        }
+      }
+    }
+    // Don't claim the annotations, other processors may be interested in them as well.
+    return false;
+  }
+
+  /**
+   * Handlers are only generated for concrete classes that code in their package can refer to.
+   */
+  private static boolean isSupported(TypeElement type)
+  {
+    if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+      return false;
+    }
+    for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+      final TypeElement enclosing = (TypeElement) e;
+      if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+        return false;
+      }
+      if (enclosing.getNestingKind() != NestingKind.TOP_LEVEL && enclosing.getNestingKind() != NestingKind.MEMBER) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void generate(TypeElement type) throws IOException
+  {
+    final List<ExecutableElement> startMethods = new ArrayList<>();
+    final List<ExecutableElement> stopMethods = new ArrayList<>();
+    // Same methods as Lifecycle's reflection based handler: public, no-arg instance methods, including inherited ones.
+    for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+      if (!method.getModifiers().contains(Modifier.PUBLIC)
+          || method.getModifiers().contains(Modifier.STATIC)
+          || !method.getParameters().isEmpty()) {
+        continue;
+      }
+      if (hasAnnotation(method, LifecycleStart.class)) {
+        startMethods.add(method);
+      }
+      if (hasAnnotation(method, LifecycleStop.class)) {
+        stopMethods.add(method);
+      }
+    }
+
+    final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+    final String packageName = pkg.getQualifiedName().toString();
+    final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    final String handlerName = (pkg.isUnnamed() ? binaryName : binaryName.substring(packageName.length() + 1))
+                               + HANDLER_SUFFIX;
+    final String typeName = type.getQualifiedName().toString();
+
+    try (PrintWriter out = new PrintWriter(
+        processingEnv.getFiler()
+                     .createSourceFile(pkg.isUnnamed() ? handlerName : packageName + "." + handlerName, type)
+                     .openWriter()
+    )) {
+      if (!pkg.isUnnamed()) {
+        out.println("package " + packageName + ";");
+        out.println();
+      }
+      out.println("/**");
+      out.println(" * Lifecycle handler of {@link " + typeName + "}, generated by " + getClass().getName() + ".");
+      out.println(" */");
+      out.println("@SuppressWarnings(\"rawtypes\")");
+      out.println("public final class " + handlerName + " implements " + Lifecycle.Handler.class.getCanonicalName());
+      out.println("{");
+      out.println("  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(" + handlerName + ".class);");
+      out.println();
+      out.println("  private final " + typeName + " o;");
+      out.println();
+      out.println("  public " + handlerName + "(" + typeName + " o)");
+      out.println("  {");
+      out.println("    this.o = o;");
+      out.println("  }");
+      out.println();
+      out.println("  @Override");
+      out.println("  public void start() throws Exception");
+      out.println("  {");
+      for (ExecutableElement method : startMethods) {
+        out.println("    log.info(\"Invoking start method[{}] on object[{}].\", \"" + describe(method) + "\", o);");
+        out.println("    o." + method.getSimpleName() + "();");
+      }
+      out.println("  }");
+      out.println();
+      out.println("  @Override");
+      out.println("  public void stop()");
+      out.println("  {");
+      for (ExecutableElement method : stopMethods) {
+        out.println("    log.info(\"Invoking stop method[{}] on object[{}].\", \"" + describe(method) + "\", o);");
+        out.println("    try {");
+        out.println("      o." + method.getSimpleName() + "();");
+        out.println("    }");
+        out.println("    catch (Exception e) {");
+        out.println("      log.error(\"Exception when stopping method[{}] on object[{}]\", \"" + describe(method) + "\", o, e);");
+        out.println("    }");
+      }
+      out.println("  }");
+      out.println();
+      out.println("  @Override");
+      out.println("  public String toString()");
+      out.println("  {");
+      out.println("    return \"" + binaryName + "\";");
+      out.println("  }");
+      out.println("}");
+    }
+  }
+
+  private static boolean hasAnnotation(ExecutableElement method, Class<? extends Annotation> annotation)
+  {
+    for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+      if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String describe(ExecutableElement method)
+  {
+    return ((TypeElement) method.getEnclosingElement()).getQualifiedName() + "." + method.getSimpleName() + "()";
+  }
+}
@@ -19,24 +19,64 @@
 
 package com.google.code.guice.lifecycle;
 
+import com.google.code.guice.common.utils.JvmUtils;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.*;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
+import com.google.inject.spi.Message;
+import lombok.extern.slf4j.Slf4j;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A Module to add lifecycle management to the injector.
  */
+@Slf4j
 public class LifecycleModule implements Module
 {
   // this scope includes final logging shutdown, so all other handlers in this lifecycle scope should avoid logging in
   // the 'stop' method, either failing silently or failing violently and throwing an exception causing an ungraceful exit
   private final LifecycleScope initScope = new LifecycleScope(Lifecycle.Stage.INIT);
   private final LifecycleScope scope = new LifecycleScope(Lifecycle.Stage.NORMAL);
+  private final LifecycleScope warmupScope = new LifecycleScope(Lifecycle.Stage.WARMUP);
   private final LifecycleScope serverScope = new LifecycleScope(Lifecycle.Stage.SERVER);
   private final LifecycleScope annoucementsScope = new LifecycleScope(Lifecycle.Stage.ANNOUNCEMENTS);
+  private final int eagerLoadParallelism;
+
+  public LifecycleModule()
+  {
+    this(1);
+  }
+
+  /**
+   * @param eagerLoadParallelism The number of threads pulling the keys registered with {@link #registerKey} out of the
+   *                             injector when the lifecycle starts, 1 to load them one after another.  Keys are loaded
+   *                             phase by phase, see {@link #registerKey(Binder, Key, int)}.
+   */
+  public LifecycleModule(int eagerLoadParallelism)
+  {
+    if (eagerLoadParallelism < 1) {
+      throw new IllegalArgumentException("eagerLoadParallelism must be positive");
+    }
+    this.eagerLoadParallelism = eagerLoadParallelism;
+  }
 
   /**
    * Registers a class to instantiate eagerly.  Classes mentioned here will be pulled out of
@@ -98,7 +138,19 @@ public class LifecycleModule implements Module
    */
   public static void registerKey(Binder binder, Key<?> key)
   {
-    getEagerBinder(binder).addBinding().toInstance(new KeyHolder<Object>(key));
+    registerKey(binder, key, 0);
+  }
+
+  /**
+   * Registers a key to instantiate eagerly, see {@link #registerKey(Binder, Key)}.  Every key of a lower phase is
+   * instantiated before any key of a higher phase, keys of the same phase may be instantiated concurrently.
+   *
+   * @param key   The key to instantiate
+   * @param phase The phase to instantiate it in, keys registered without one are in phase 0
+   */
+  public static void registerKey(Binder binder, Key<?> key, int phase)
+  {
+    getEagerBinder(binder).addBinding().toInstance(new KeyHolder<Object>(key, phase));
   }
 
   private static Multibinder<KeyHolder> getEagerBinder(Binder binder)
@@ -113,6 +165,7 @@ public class LifecycleModule implements Module
 
     binder.bindScope(ManageLifecycleInit.class, initScope);
     binder.bindScope(ManageLifecycle.class, scope);
+    binder.bindScope(ManageLifecycleWarmup.class, warmupScope);
     binder.bindScope(ManageLifecycleServer.class, serverScope);
     binder.bindScope(ManageLifecycleAnnouncements.class, annoucementsScope);
   }
@@ -128,17 +181,108 @@ public class LifecycleModule implements Module
       @Override
       public void start() throws Exception
       {
-        for (KeyHolder<?> holder : eagerClasses) {
-          injector.getInstance(holder.getKey()); // Pull the key so as to "eagerly" load up the class.
-        }
+        getStartupProfiler().begin();
+        loadEagerly(injector, eagerClasses, getStartupProfiler());
         super.start();
       }
     };
     initScope.setLifecycle(lifecycle);
     scope.setLifecycle(lifecycle);
+    warmupScope.setLifecycle(lifecycle);
     serverScope.setLifecycle(lifecycle);
     annoucementsScope.setLifecycle(lifecycle);
 
     return lifecycle;
   }
+
+  /**
+   * Pulls the registered keys out of the injector so as to "eagerly" load up their classes, phase by phase.  With more
+   * than one thread, every key of a phase is attempted and all failures are reported together.  The time taken by every
+   * key is recorded in the lifecycle's {@link StartupProfiler}.
+   */
+  private void loadEagerly(Injector injector, Set<KeyHolder> holders, StartupProfiler profiler)
+      throws InterruptedException
+  {
+    final SortedMap<Integer, List<Key<?>>> phases = new TreeMap<>();
+    for (KeyHolder<?> holder : holders) {
+      phases.computeIfAbsent(holder.getPhase(), k -> new ArrayList<>()).add(holder.getKey());
+    }
+
+    if (eagerLoadParallelism == 1) {
+      for (Map.Entry<Integer, List<Key<?>>> phase : phases.entrySet()) {
+        Key<?> previous = null;
+        for (Key<?> key : phase.getValue()) {
+          loadKey(injector, key, profiler, phase.getKey(), previous);
+          previous = key;
+        }
+      }
+      return;
+    }
+
+    final ExecutorService exec = Executors.newFixedThreadPool(
+        eagerLoadParallelism,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("LifecycleModule-eager-%d").build()
+    );
+    try {
+      for (Map.Entry<Integer, List<Key<?>>> phase : phases.entrySet()) {
+        log.info("Eagerly loading [{}] keys of phase [{}]", phase.getValue().size(), phase.getKey());
+        final Map<Key<?>, Future<?>> futures = new LinkedHashMap<>();
+        for (Key<?> key : phase.getValue()) {
+          futures.put(key, exec.submit(() -> loadKey(injector, key, profiler, phase.getKey(), null)));
+        }
+
+        final List<Message> errors = new ArrayList<>();
+        for (Map.Entry<Key<?>, Future<?>> e : futures.entrySet()) {
+          try {
+            e.getValue().get();
+          }
+          catch (ExecutionException ex) {
+            errors.addAll(toMessages(e.getKey(), ex.getCause()));
+          }
+        }
+        if (!errors.isEmpty()) {
+          throw new ProvisionException(errors);
+        }
+      }
+    }
+    finally {
+      exec.shutdownNow();
+    }
+  }
+
+  private static void loadKey(
+      Injector injector,
+      Key<?> key,
+      StartupProfiler profiler,
+      int phase,
+      Key<?> previous
+  )
+  {
+    final long startCpuNanos = JvmUtils.safeGetThreadCpuTime();
+    final long startNanos = System.nanoTime();
+    injector.getInstance(key);
+    final long endNanos = System.nanoTime();
+    profiler.record(
+        "eager phase " + phase,
+        key,
+        previous == null ? Collections.emptyList() : Collections.singletonList(previous),
+        startNanos,
+        endNanos,
+        JvmUtils.safeGetThreadCpuTime() - startCpuNanos
+    );
+    log.info("Eagerly loaded [{}] in [{}] ms", key, TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+  }
+
+  private static Collection<Message> toMessages(Key<?> key, Throwable t)
+  {
+    if (t instanceof ProvisionException) {
+      return ((ProvisionException) t).getErrorMessages();
+    }
+    if (t instanceof ConfigurationException) {
+      return ((ConfigurationException) t).getErrorMessages();
+    }
+    return ImmutableList.of(
+        new Message(ImmutableList.<Object>of(key), "Unable to eagerly load " + key + ": " + Throwables.getRootCause(t), t)
+    );
+  }
 }
@@ -35,7 +35,8 @@ public class LifecycleScope implements Scope
 {
   private final Lifecycle.Stage stage;
 
-  private Lifecycle lifecycle;
+  /** Once set, read without holding the instances lock, see {@link #scope(Key, Provider)}. */
+  private volatile Lifecycle lifecycle;
   private final List<Object> instances = new ArrayList<>();
 
   public LifecycleScope(Lifecycle.Stage stage)
@@ -53,6 +54,10 @@ public class LifecycleScope implements Scope
     }
   }
 
+  /**
+   * The returned provider only synchronizes until the instance has been created, afterwards {@link Provider#get()} is a
+   * single volatile read.  The shared instances lock is only taken while the lifecycle hasn't been set yet.
+   */
   @Override
   public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped)
   {
@@ -61,29 +66,40 @@ public class LifecycleScope implements Scope
       private volatile T value = null;
 
       @Override
-      public synchronized T get()
+      public T get()
       {
-        if (value == null) {
-          final T retVal = unscoped.get();
+        final T existing = value;
+        if (existing != null) {
+          return existing;
+        }
+        synchronized (this) {
+          if (value == null) {
+            final T retVal = unscoped.get();
 
-          synchronized (instances) {
-            if (lifecycle == null) {
-              instances.add(retVal);
-            } else {
+            Lifecycle current = lifecycle;
+            if (current == null) {
+              synchronized (instances) {
+                // Check again, setLifecycle() might have been called in the meantime.
+                current = lifecycle;
+                if (current == null) {
+                  instances.add(retVal);
+                }
+              }
+            }
+            if (current != null) {
               try {
-                lifecycle.addMaybeStartManagedInstance(retVal, stage);
+                current.addMaybeStartManagedInstance(retVal, stage);
               }
               catch (Exception e) {
-                log.warn("Caught exception when trying to create a[%s]", key, e);
+                log.warn("Caught exception when trying to create a[{}]", key, e);
                 return null;
               }
             }
-          }
 
-          value = retVal;
+            value = retVal;
+          }
+          return value;
         }
-
-        return value;
       }
     };
   }
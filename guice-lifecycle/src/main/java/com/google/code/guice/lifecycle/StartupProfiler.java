@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.guice.lifecycle;
+
+import com.google.code.guice.common.utils.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long starting a {@link Lifecycle} takes: the wall and CPU time of every eagerly loaded key and every
+ * {@link Lifecycle.Handler#start()}, grouped in sections which run one after another (eager loading phases, then
+ * stages).  Recording costs a couple of clock reads per handler, so it is always on.
+ *
+ * The critical path of a section is the chain of entries which determined when it finished: starting from the entry
+ * finishing last, each entry is preceded by whichever of its predecessors finished last.  Handlers started serially
+ * are preceded by the handler started before them, handlers started in parallel by their declared dependencies.
+ */
+@Slf4j
+public class StartupProfiler
+{
+  private static final int SLOWEST_LOGGED = 10;
+
+  /** Guarded by this. */
+  private final Map<String, Section> sections = new LinkedHashMap<>();
+  private volatile long startNanos = 0;
+  private volatile long endNanos = 0;
+
+  void begin()
+  {
+    if (startNanos == 0) {
+      startNanos = System.nanoTime();
+    }
+  }
+
+  void finish()
+  {
+    endNanos = System.nanoTime();
+  }
+
+  /**
+   * @param section      The section the entry belongs to
+   * @param subject      What was started or loaded, a {@link Lifecycle.Handler} or a Guice key
+   * @param predecessors Subjects of the same section this one had to wait for
+   */
+  void record(
+      String section,
+      Object subject,
+      Collection<?> predecessors,
+      long startNanos,
+      long endNanos,
+      long cpuNanos
+  )
+  {
+    final Entry entry = new Entry(section, String.valueOf(subject), predecessors, startNanos, endNanos, cpuNanos);
+    synchronized (this) {
+      sections.computeIfAbsent(section, Section::new).entries.put(subject, entry);
+    }
+  }
+
+  /**
+   * @return the wall time from the first recorded entry, or the beginning of start(), to its end
+   */
+  public long getWallNanos()
+  {
+    return endNanos - startNanos;
+  }
+
+  /**
+   * @return the entries of the critical path of every section, in order
+   */
+  public synchronized List<Entry> getCriticalPath()
+  {
+    final List<Entry> path = new ArrayList<>();
+    for (Section section : sections.values()) {
+      path.addAll(section.criticalPath());
+    }
+    return path;
+  }
+
+  /**
+   * @return every recorded entry, slowest first
+   */
+  public synchronized List<Entry> getEntriesByWallTime()
+  {
+    final List<Entry> entries = new ArrayList<>();
+    for (Section section : sections.values()) {
+      entries.addAll(section.entries.values());
+    }
+    entries.sort(Comparator.comparingLong(Entry::getWallNanos).reversed());
+    return entries;
+  }
+
+  void logReport(String lifecycleName)
+  {
+    final List<Entry> criticalPath = getCriticalPath();
+    final StringBuilder report = new StringBuilder();
+    report.append(
+        StringUtils.format(
+            "Lifecycle [%s] started in [%,d] ms, critical path of [%,d] ms:",
+            lifecycleName,
+            TimeUnit.NANOSECONDS.toMillis(getWallNanos()),
+            TimeUnit.NANOSECONDS.toMillis(sumWallNanos(criticalPath))
+        )
+    );
+    for (Entry entry : criticalPath) {
+      report.append("\n  ").append(entry);
+    }
+    final List<Entry> slowest = getEntriesByWallTime();
+    report.append("\nSlowest:");
+    for (Entry entry : slowest.subList(0, Math.min(SLOWEST_LOGGED, slowest.size()))) {
+      report.append("\n  ").append(entry);
+    }
+    log.info(report.toString());
+  }
+
+  public String toJson(String lifecycleName)
+  {
+    final List<Entry> criticalPath = getCriticalPath();
+    final StringBuilder json = new StringBuilder();
+    json.append("{\"lifecycle\":").append(quote(lifecycleName))
+        .append(",\"wallMillis\":").append(millis(getWallNanos()))
+        .append(",\"criticalPathMillis\":").append(millis(sumWallNanos(criticalPath)))
+        .append(",\"criticalPath\":");
+    appendEntries(json, criticalPath);
+    json.append(",\"sections\":[");
+    synchronized (this) {
+      boolean first = true;
+      for (Section section : sections.values()) {
+        if (!first) {
+          json.append(',');
+        }
+        first = false;
+        final List<Entry> entries = new ArrayList<>(section.entries.values());
+        entries.sort(Comparator.comparingLong(Entry::getWallNanos).reversed());
+        json.append("{\"name\":").append(quote(section.name))
+            .append(",\"wallMillis\":").append(millis(section.wallNanos()))
+            .append(",\"entries\":");
+        appendEntries(json, entries);
+        json.append('}');
+      }
+    }
+    json.append("]}");
+    return json.toString();
+  }
+
+  private static void appendEntries(StringBuilder json, List<Entry> entries)
+  {
+    json.append('[');
+    for (int i = 0; i < entries.size(); i++) {
+      final Entry entry = entries.get(i);
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"section\":").append(quote(entry.section))
+          .append(",\"name\":").append(quote(entry.name))
+          .append(",\"wallMillis\":").append(millis(entry.getWallNanos()))
+          .append(",\"cpuMillis\":").append(millis(entry.cpuNanos))
+          .append('}');
+    }
+    json.append(']');
+  }
+
+  private static long sumWallNanos(List<Entry> entries)
+  {
+    long sum = 0;
+    for (Entry entry : entries) {
+      sum += entry.getWallNanos();
+    }
+    return sum;
+  }
+
+  private static String millis(long nanos)
+  {
+    return StringUtils.format("%.3f", nanos / 1e6);
+  }
+
+  private static String quote(String s)
+  {
+    final StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(StringUtils.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static class Section
+  {
+    private final String name;
+    /** Keyed by subject identity, handlers don't necessarily implement equals(). */
+    private final Map<Object, Entry> entries = new IdentityHashMap<>();
+
+    Section(String name)
+    {
+      this.name = name;
+    }
+
+    long wallNanos()
+    {
+      long start = Long.MAX_VALUE;
+      long end = Long.MIN_VALUE;
+      for (Entry entry : entries.values()) {
+        start = Math.min(start, entry.startNanos);
+        end = Math.max(end, entry.endNanos);
+      }
+      return entries.isEmpty() ? 0 : end - start;
+    }
+
+    List<Entry> criticalPath()
+    {
+      final List<Entry> path = new ArrayList<>();
+      Entry entry = latest(entries.values());
+      while (entry != null) {
+        path.add(entry);
+        final List<Entry> predecessors = new ArrayList<>();
+        for (Object predecessor : entry.predecessors) {
+          final Entry predecessorEntry = entries.get(predecessor);
+          if (predecessorEntry != null) {
+            predecessors.add(predecessorEntry);
+          }
+        }
+        entry = latest(predecessors);
+      }
+      Collections.reverse(path);
+      return path;
+    }
+
+    private static Entry latest(Collection<Entry> entries)
+    {
+      Entry latest = null;
+      for (Entry entry : entries) {
+        if (latest == null || entry.endNanos > latest.endNanos) {
+          latest = entry;
+        }
+      }
+      return latest;
+    }
+  }
+
+  public static class Entry
+  {
+    private final String section;
+    private final String name;
+    private final Collection<?> predecessors;
+    private final long startNanos;
+    private final long endNanos;
+    private final long cpuNanos;
+
+    Entry(String section, String name, Collection<?> predecessors, long startNanos, long endNanos, long cpuNanos)
+    {
+      this.section = section;
+      this.name = name;
+      this.predecessors = predecessors;
+      this.startNanos = startNanos;
+      this.endNanos = endNanos;
+      this.cpuNanos = cpuNanos;
+    }
+
+    public String getSection()
+    {
+      return section;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public long getWallNanos()
+    {
+      return endNanos - startNanos;
+    }
+
+    public long getCpuNanos()
+    {
+      return cpuNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+      return StringUtils.format(
+          "[%s] %s: wall [%,d] ms, cpu [%,d] ms",
+          section,
+          name,
+          TimeUnit.NANOSECONDS.toMillis(getWallNanos()),
+          TimeUnit.NANOSECONDS.toMillis(cpuNanos)
+      );
+    }
+  }
+}
@@ -20,13 +20,24 @@
 package com.google.code.lifecycle;
 
 import com.google.code.guice.lifecycle.*;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Binder;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Module;
+import com.google.inject.Provider;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  */
 public class LifecycleScopeTest
@@ -153,6 +164,95 @@ public class LifecycleScopeTest
     Assert.assertEquals(2, instance.getRan());
   }
 
+  @Test(timeout = 10_000)
+  public void testConcurrentFirstGetCreatesOneInstance() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("scope");
+    final LifecycleScope scope = new LifecycleScope(Lifecycle.Stage.NORMAL);
+
+    // Created before the lifecycle is set, registered when it is.
+    final AtomicInteger created = new AtomicInteger();
+    final List<CountingClass> before = getConcurrently(scope.scope(Key.get(CountingClass.class), () -> {
+      created.incrementAndGet();
+      return new CountingClass();
+    }));
+    Assert.assertEquals(1, created.get());
+    Assert.assertEquals(1, ImmutableSet.copyOf(before).size());
+
+    scope.setLifecycle(lifecycle);
+    lifecycle.start();
+    Assert.assertEquals(1, before.get(0).started.get());
+
+    // Created once the lifecycle has started, started right away.
+    final Provider<CountingClass> provider = scope.scope(Key.get(CountingClass.class), () -> {
+      created.incrementAndGet();
+      return new CountingClass();
+    });
+    final List<CountingClass> after = getConcurrently(provider);
+    Assert.assertEquals(2, created.get());
+    Assert.assertEquals(1, ImmutableSet.copyOf(after).size());
+    Assert.assertEquals(1, after.get(0).started.get());
+    Assert.assertSame(after.get(0), provider.get());
+    Assert.assertEquals(2, created.get());
+
+    lifecycle.stop();
+    Assert.assertEquals(1, before.get(0).stopped.get());
+    Assert.assertEquals(1, after.get(0).stopped.get());
+  }
+
+  private static <T> List<T> getConcurrently(Provider<T> provider) throws Exception
+  {
+    final int threads = 16;
+    final ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try {
+      final CyclicBarrier barrier = new CyclicBarrier(threads);
+      final List<Future<T>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(exec.submit(() -> {
+          barrier.await();
+          return provider.get();
+        }));
+      }
+      final List<T> values = new ArrayList<>();
+      for (Future<T> future : futures) {
+        values.add(future.get());
+      }
+      return values;
+    }
+    finally {
+      exec.shutdownNow();
+    }
+  }
+
+  public static class CountingClass
+  {
+    final AtomicInteger started = new AtomicInteger();
+    final AtomicInteger stopped = new AtomicInteger();
+
+    public CountingClass()
+    {
+      // Widens the window in which concurrent first calls race.
+      try {
+        Thread.sleep(50);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @LifecycleStart
+    public void start()
+    {
+      started.incrementAndGet();
+    }
+
+    @LifecycleStop
+    public void stop()
+    {
+      stopped.incrementAndGet();
+    }
+  }
+
   private interface TestInterface
   {
     void run();
@@ -0,0 +1,556 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.lifecycle;
+
+import com.google.code.guice.lifecycle.ISE;
+import com.google.code.guice.lifecycle.Lifecycle;
+import com.google.code.guice.lifecycle.LifecycleModule;
+import com.google.code.guice.lifecycle.LifecycleStart;
+import com.google.code.guice.lifecycle.LifecycleStop;
+import com.google.code.guice.lifecycle.StartupProfiler;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.name.Names;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ */
+public class LifecycleTest
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testParallelStartRunsIndependentHandlersConcurrently() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("parallel");
+    lifecycle.setStartParallelism(2);
+    // Both handlers wait for each other, so this only completes when they are started at the same time.
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    lifecycle.addHandler(new BarrierHandler("a", barrier, events));
+    lifecycle.addHandler(new BarrierHandler("b", barrier, events));
+
+    lifecycle.start();
+    Assert.assertEquals(2, events.size());
+    lifecycle.stop();
+  }
+
+  @Test
+  public void testParallelStartHonorsDependenciesAndStages() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("parallel");
+    lifecycle.setStartParallelism(4);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final Lifecycle.Handler init = new RecordingHandler("init", 0, events);
+    final Lifecycle.Handler slow = new RecordingHandler("slow", 100, events);
+    final Lifecycle.Handler dependent = new RecordingHandler("dependent", 0, events);
+    final Lifecycle.Handler server = new RecordingHandler("server", 0, events);
+    lifecycle.addHandler(init, Lifecycle.Stage.INIT);
+    lifecycle.addHandler(slow);
+    lifecycle.addHandler(dependent, Lifecycle.Stage.NORMAL, slow, init);
+    lifecycle.addHandler(server, Lifecycle.Stage.SERVER);
+
+    lifecycle.start();
+    Assert.assertEquals(
+        ImmutableList.of("start init", "start slow", "start dependent", "start server"),
+        events
+    );
+    lifecycle.stop();
+  }
+
+  @Test(expected = ISE.class)
+  public void testDependencyMustBeAddedFirst()
+  {
+    final Lifecycle lifecycle = new Lifecycle("parallel");
+    final Lifecycle.Handler server = new RecordingHandler("server", 0, new CopyOnWriteArrayList<>());
+    lifecycle.addHandler(server, Lifecycle.Stage.SERVER);
+    lifecycle.addHandler(new RecordingHandler("normal", 0, new CopyOnWriteArrayList<>()), Lifecycle.Stage.NORMAL, server);
+  }
+
+  @Test
+  public void testParallelStartFailureStopsStartedHandlers() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("parallel");
+    lifecycle.setStartParallelism(2);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final Lifecycle.Handler first = new RecordingHandler("first", 0, events);
+    final Lifecycle.Handler second = new RecordingHandler("second", 0, events);
+    final Lifecycle.Handler failing = new Lifecycle.Handler()
+    {
+      @Override
+      public void start()
+      {
+        throw new IllegalStateException("failed");
+      }
+
+      @Override
+      public void stop()
+      {
+        events.add("stop failing");
+      }
+    };
+    lifecycle.addHandler(first, Lifecycle.Stage.INIT);
+    lifecycle.addHandler(second, Lifecycle.Stage.NORMAL, first);
+    lifecycle.addHandler(failing, Lifecycle.Stage.NORMAL, second);
+    lifecycle.addHandler(new RecordingHandler("skipped", 0, events), Lifecycle.Stage.SERVER);
+
+    try {
+      lifecycle.start();
+      Assert.fail("start() should have failed");
+    }
+    catch (IllegalStateException e) {
+      Assert.assertEquals("failed", e.getMessage());
+    }
+    Assert.assertEquals(
+        ImmutableList.of("start first", "start second", "stop second", "stop first"),
+        events
+    );
+
+    // The lifecycle is already stopped, stopping again does nothing.
+    lifecycle.stop();
+    Assert.assertEquals(4, events.size());
+  }
+
+  @Test(timeout = 10_000)
+  public void testStopHandlerTimeout() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("deadline");
+    lifecycle.setStopTimeout(5000, 200, TimeUnit.MILLISECONDS);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Lifecycle.Handler dependency = new RecordingHandler("dependency", 0, events);
+    lifecycle.addHandler(new RecordingHandler("init", 0, events), Lifecycle.Stage.INIT);
+    lifecycle.addHandler(dependency);
+    lifecycle.addHandler(new RecordingHandler("dependent", 0, events), Lifecycle.Stage.NORMAL, dependency);
+    lifecycle.addHandler(new HungHandler(release));
+    lifecycle.start();
+    events.clear();
+
+    try {
+      lifecycle.stop();
+      // The hung handler neither blocks the other handlers of its stage nor the INIT stage.
+      Assert.assertEquals(ImmutableList.of("stop dependent", "stop dependency", "stop init"), events);
+    }
+    finally {
+      release.countDown();
+    }
+  }
+
+  @Test(timeout = 10_000)
+  public void testStopGlobalTimeout() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("deadline");
+    lifecycle.setStopTimeout(300, 10_000, TimeUnit.MILLISECONDS);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final CountDownLatch release = new CountDownLatch(1);
+    lifecycle.addHandler(new RecordingHandler("init", 0, events), Lifecycle.Stage.INIT);
+    lifecycle.addHandler(new HungHandler(release));
+    lifecycle.start();
+    events.clear();
+
+    try {
+      final long startNanos = System.nanoTime();
+      lifecycle.stop();
+      Assert.assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+      // The deadline was reached while stopping the NORMAL stage, so the INIT stage was abandoned.
+      Assert.assertEquals(ImmutableList.of(), events);
+    }
+    finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testStartupProfileCriticalPath() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("profiled");
+    lifecycle.setStartParallelism(4);
+    final File reportFile = new File(temporaryFolder.getRoot(), "startup.json");
+    lifecycle.setStartupReportFile(reportFile);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final Lifecycle.Handler fast = new RecordingHandler("fast", 0, events);
+    final Lifecycle.Handler slow = new RecordingHandler("slow", 100, events);
+    lifecycle.addHandler(new RecordingHandler("init", 0, events), Lifecycle.Stage.INIT);
+    lifecycle.addHandler(fast);
+    lifecycle.addHandler(slow);
+    lifecycle.addHandler(new RecordingHandler("afterFast", 0, events), Lifecycle.Stage.NORMAL, fast);
+    lifecycle.addHandler(new RecordingHandler("afterSlow", 0, events), Lifecycle.Stage.NORMAL, slow);
+
+    lifecycle.start();
+    final StartupProfiler profiler = lifecycle.getStartupProfiler();
+    Assert.assertEquals(
+        ImmutableList.of("init", "slow", "afterSlow"),
+        profiler.getCriticalPath().stream().map(StartupProfiler.Entry::getName).collect(Collectors.toList())
+    );
+    Assert.assertEquals("slow", profiler.getEntriesByWallTime().get(0).getName());
+    Assert.assertTrue(profiler.getWallNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+    final String json = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+    Assert.assertTrue(json, json.startsWith("{\"lifecycle\":\"profiled\""));
+    Assert.assertTrue(json, json.contains("\"name\":\"afterSlow\""));
+    lifecycle.stop();
+  }
+
+  @Test(timeout = 10_000)
+  public void testAsyncHandlersCompleteWithinTheirStage() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("async");
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final CompletableFuture<Void> aStarted = new CompletableFuture<>();
+    final CompletableFuture<Void> bStarted = new CompletableFuture<>();
+    final AsyncRecordingHandler a = new AsyncRecordingHandler("a", aStarted, events);
+    // b completes the start of a, which could never happen if starting a had blocked the single start thread.
+    final AsyncRecordingHandler b = new AsyncRecordingHandler("b", bStarted, events);
+    lifecycle.addAsyncHandler(a, Lifecycle.Stage.NORMAL);
+    final Lifecycle.Handler registeredB = lifecycle.addAsyncHandler(b, Lifecycle.Stage.NORMAL);
+    lifecycle.addHandler(new RecordingHandler("afterB", 0, events), Lifecycle.Stage.NORMAL, registeredB);
+    lifecycle.addHandler(new RecordingHandler("server", 0, events), Lifecycle.Stage.SERVER);
+    b.onStart = () -> {
+      aStarted.complete(null);
+      CompletableFuture.runAsync(() -> bStarted.complete(null));
+    };
+
+    lifecycle.start();
+    Assert.assertEquals(ImmutableList.of("start a", "start b", "start afterB", "start server"), events);
+    lifecycle.stop();
+    Assert.assertEquals(ImmutableList.of("stop server", "stop afterB"), events.subList(4, 6));
+    // a and b are stopped concurrently, but both within the stop of their stage.
+    Assert.assertEquals(ImmutableSet.of("stop a", "stop b"), ImmutableSet.copyOf(events.subList(6, events.size())));
+  }
+
+  @Test(timeout = 10_000)
+  public void testWarmupGatesServerStage() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("warmup");
+    lifecycle.setWarmup(500, 5_000, TimeUnit.MILLISECONDS);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    final CountDownLatch never = new CountDownLatch(1);
+    lifecycle.addHandler(new RecordingHandler("cache", 0, events), Lifecycle.Stage.WARMUP);
+    lifecycle.addHandler(new RecordingHandler("server", 0, events), Lifecycle.Stage.SERVER);
+    // Both tasks wait for each other, so they must run in parallel.
+    lifecycle.addWarmupTask("a", () -> awaitBarrier(barrier, events, "warm a"));
+    lifecycle.addWarmupTask("b", () -> awaitBarrier(barrier, events, "warm b"));
+    lifecycle.addWarmupTask("hung", () -> {
+      try {
+        never.await();
+      }
+      catch (InterruptedException e) {
+        events.add("interrupted hung");
+      }
+    });
+    final AtomicInteger polls = new AtomicInteger();
+    lifecycle.addReadinessCheck("third poll", () -> polls.incrementAndGet() >= 3);
+
+    lifecycle.start();
+    Assert.assertEquals("start cache", events.get(0));
+    Assert.assertEquals("start server", events.get(events.size() - 1));
+    Assert.assertTrue(events.toString(), events.containsAll(ImmutableList.of("warm a", "warm b")));
+    Assert.assertEquals(3, polls.get());
+    lifecycle.stop();
+  }
+
+  @Test(timeout = 10_000)
+  public void testReadinessTimeoutFailsStart() throws Exception
+  {
+    final Lifecycle lifecycle = new Lifecycle("warmup");
+    lifecycle.setWarmup(0, 200, TimeUnit.MILLISECONDS);
+    final List<String> events = new CopyOnWriteArrayList<>();
+    lifecycle.addHandler(new RecordingHandler("server", 0, events), Lifecycle.Stage.SERVER);
+    lifecycle.addReadinessCheck("never", () -> false);
+    try {
+      lifecycle.start();
+      Assert.fail("start() should have failed");
+    }
+    catch (ISE e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("[never]"));
+    }
+    Assert.assertTrue(events.isEmpty());
+  }
+
+  @Test
+  public void testGeneratedManagedHandler() throws Exception
+  {
+    // Generated by LifecycleHandlerProcessor while compiling this test.
+    Assert.assertNotNull(Class.forName(ManagedClass.class.getName() + "$$LifecycleHandler"));
+
+    final Lifecycle lifecycle = new Lifecycle("generated");
+    final List<String> events = new CopyOnWriteArrayList<>();
+    lifecycle.addManagedInstance(new ManagedClass(events));
+    lifecycle.start();
+    lifecycle.stop();
+    Assert.assertEquals(ImmutableList.of("start", "stop"), events);
+  }
+
+  @Test
+  public void testStartFailurePropagatesTheThrownException() throws Exception
+  {
+    for (int parallelism : new int[]{1, 4}) {
+      for (Exception failure : new Exception[]{new IOException("checked"), new IllegalStateException("unchecked")}) {
+        // Not public, so started through its MethodHandles rather than a generated handler.
+        final FailingStartClass failing = new FailingStartClass(failure);
+        final Lifecycle lifecycle = new Lifecycle("failing");
+        lifecycle.setStartParallelism(parallelism);
+        lifecycle.addManagedInstance(failing);
+        try {
+          lifecycle.start();
+          Assert.fail("start() should have failed");
+        }
+        catch (Exception e) {
+          Assert.assertSame("parallelism " + parallelism, failure, e);
+          Assert.assertNull(e.getCause());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testParallelEagerLoadAggregatesFailures() throws Exception
+  {
+    EagerClass.LOADED.clear();
+    final Injector injector = Guice.createInjector(
+        new LifecycleModule(4),
+        binder -> {
+          LifecycleModule.registerKey(binder, Key.get(EagerClass.class), 0);
+          LifecycleModule.registerKey(binder, Key.get(FailingClass.class, Names.named("a")), 0);
+          LifecycleModule.registerKey(binder, Key.get(FailingClass.class, Names.named("b")), 0);
+          LifecycleModule.registerKey(binder, Key.get(LateEagerClass.class), 1);
+          binder.bind(FailingClass.class).annotatedWith(Names.named("a")).toProvider(FailingClass::fail);
+          binder.bind(FailingClass.class).annotatedWith(Names.named("b")).toProvider(FailingClass::fail);
+        }
+    );
+
+    try {
+      injector.getInstance(Lifecycle.class).start();
+      Assert.fail("start() should have failed");
+    }
+    catch (ProvisionException e) {
+      Assert.assertEquals(2, e.getErrorMessages().size());
+    }
+    // The later phase isn't loaded once an earlier one failed.
+    Assert.assertEquals(ImmutableList.of("EagerClass"), EagerClass.LOADED);
+  }
+
+  private static void awaitBarrier(CyclicBarrier barrier, List<String> events, String event)
+  {
+    try {
+      barrier.await(5, TimeUnit.SECONDS);
+      events.add(event);
+    }
+    catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static class EagerClass
+  {
+    static final List<String> LOADED = new CopyOnWriteArrayList<>();
+
+    public EagerClass()
+    {
+      LOADED.add(getClass().getSimpleName());
+    }
+  }
+
+  public static class LateEagerClass extends EagerClass
+  {
+  }
+
+  public static class FailingClass
+  {
+    static FailingClass fail()
+    {
+      throw new IllegalStateException("failed");
+    }
+  }
+
+  private static class FailingStartClass
+  {
+    private final Exception failure;
+
+    FailingStartClass(Exception failure)
+    {
+      this.failure = failure;
+    }
+
+    @LifecycleStart
+    public void start() throws Exception
+    {
+      throw failure;
+    }
+  }
+
+  public static class ManagedClass
+  {
+    private final List<String> events;
+
+    ManagedClass(List<String> events)
+    {
+      this.events = events;
+    }
+
+    @LifecycleStart
+    public void start()
+    {
+      events.add("start");
+    }
+
+    @LifecycleStop
+    public void stop()
+    {
+      events.add("stop");
+    }
+  }
+
+  private static class RecordingHandler implements Lifecycle.Handler
+  {
+    private final String name;
+    private final long startMillis;
+    private final List<String> events;
+
+    RecordingHandler(String name, long startMillis, List<String> events)
+    {
+      this.name = name;
+      this.startMillis = startMillis;
+      this.events = events;
+    }
+
+    @Override
+    public void start() throws Exception
+    {
+      Thread.sleep(startMillis);
+      events.add("start " + name);
+    }
+
+    @Override
+    public void stop()
+    {
+      events.add("stop " + name);
+    }
+
+    @Override
+    public String toString()
+    {
+      return name;
+    }
+  }
+
+  private static class AsyncRecordingHandler implements Lifecycle.AsyncHandler
+  {
+    private final String name;
+    private final CompletableFuture<Void> started;
+    private final List<String> events;
+    private volatile Runnable onStart = () -> {};
+
+    AsyncRecordingHandler(String name, CompletableFuture<Void> started, List<String> events)
+    {
+      this.name = name;
+      this.started = started;
+      this.events = events;
+    }
+
+    @Override
+    public CompletableFuture<Void> start()
+    {
+      events.add("start " + name);
+      onStart.run();
+      return started;
+    }
+
+    @Override
+    public CompletableFuture<Void> stop()
+    {
+      return CompletableFuture.runAsync(() -> events.add("stop " + name));
+    }
+  }
+
+  private static class BarrierHandler implements Lifecycle.Handler
+  {
+    private final String name;
+    private final CyclicBarrier barrier;
+    private final List<String> events;
+
+    BarrierHandler(String name, CyclicBarrier barrier, List<String> events)
+    {
+      this.name = name;
+      this.barrier = barrier;
+      this.events = events;
+    }
+
+    @Override
+    public void start() throws Exception
+    {
+      barrier.await(10, TimeUnit.SECONDS);
+      events.add("start " + name);
+    }
+
+    @Override
+    public void stop()
+    {
+      events.add("stop " + name);
+    }
+  }
+
+  private static class HungHandler implements Lifecycle.Handler
+  {
+    private final CountDownLatch release;
+
+    HungHandler(CountDownLatch release)
+    {
+      this.release = release;
+    }
+
+    @Override
+    public void start()
+    {
+    }
+
+    @Override
+    public void stop()
+    {
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}